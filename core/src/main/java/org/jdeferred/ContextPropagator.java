@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import org.jdeferred.impl.ContextPropagation;
+
+/**
+ * Carries caller context, e.g., MDC entries, a tracing span or a tenant id, from
+ * the thread that registers a callback or submits a task to the thread that runs it.
+ * 
+ * Snapshots must be immutable, so that they can be shared by reference: capturing
+ * should return the object that represents the current context, not a copy of it.
+ * Promises compare snapshots by identity and only remember a second snapshot when a
+ * callback was registered from a different context.
+ * 
+ * <pre>
+ * <code>
+ * ContextPropagation.setPropagator(new ContextPropagator() {
+ *   public Object capture() {
+ *     return RequestContext.current();
+ *   }
+ *   public Object restore(Object snapshot) {
+ *     return RequestContext.swap((RequestContext) snapshot);
+ *   }
+ * });
+ * </code>
+ * </pre>
+ * 
+ * @see ContextPropagation
+ * @author Ray Tsang
+ */
+public interface ContextPropagator {
+	/**
+	 * @return an immutable snapshot of the current thread's context, or <code>null</code> if there is none
+	 */
+	public Object capture();
+
+	/**
+	 * Installs <code>snapshot</code> as the current thread's context.
+	 * 
+	 * @param snapshot a snapshot returned by {@link #capture()}, possibly <code>null</code>
+	 * @return the context that was installed before, to be passed to this method again afterwards
+	 */
+	public Object restore(Object snapshot);
+}
@@ -16,15 +16,28 @@ import org.jdeferred.impl.DeferredObject;
  * @param <P> Type used for {@link Deferred#notify(Object)}
  */
 public abstract class DeferredCallable<D, P> implements Callable<D> {
-	private final Deferred<D, P> deferred = new DeferredObject<D, P>();
+	private final DeferredObject<D, P> deferred = new DeferredObject<D, P>();
 	private final StartPolicy startPolicy;
+	private final int priority;
 	
 	public DeferredCallable() {
-		this.startPolicy = StartPolicy.DEFAULT;
+		this(StartPolicy.DEFAULT, DeferredFutureTask.DEFAULT_PRIORITY);
 	}
 	
 	public DeferredCallable(StartPolicy startPolicy) {
+		this(startPolicy, DeferredFutureTask.DEFAULT_PRIORITY);
+	}
+	
+	/**
+	 * @param priority see {@link DeferredFutureTask#setPriority(int)}
+	 */
+	public DeferredCallable(int priority) {
+		this(StartPolicy.DEFAULT, priority);
+	}
+	
+	public DeferredCallable(StartPolicy startPolicy, int priority) {
 		this.startPolicy = startPolicy;
+		this.priority = priority;
 	}
 	
 	/**
@@ -35,6 +48,25 @@ public abstract class DeferredCallable<D, P> implements Callable<D> {
 		deferred.notify(progress);
 	}
 	
+	/**
+	 * Tells how many more progress values subscribers of {@link Promise#progressPublisher()}
+	 * are ready to receive.  Long running tasks can use this to hold back or coalesce
+	 * progress instead of overflowing slow consumers.
+	 * 
+	 * <pre>
+	 * <code>
+	 * if (progressDemand() > 0) {
+	 *   notify(chunk);
+	 * }
+	 * </code>
+	 * </pre>
+	 * 
+	 * @return outstanding demand of the slowest subscriber, or {@link Long#MAX_VALUE} if there is none
+	 */
+	protected long progressDemand() {
+		return deferred.progressDemand();
+	}
+	
 	protected Deferred<D, P> getDeferred() {
 		return deferred;
 	}
@@ -42,4 +74,8 @@ public abstract class DeferredCallable<D, P> implements Callable<D> {
 	public StartPolicy getStartPolicy() {
 		return startPolicy;
 	}
+
+	public int getPriority() {
+		return priority;
+	}
 }
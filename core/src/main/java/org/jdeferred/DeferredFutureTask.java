@@ -19,9 +19,14 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.impl.AbstractPromise;
+import org.jdeferred.impl.ContextPropagation;
 import org.jdeferred.impl.DeferredObject;
+import org.jdeferred.impl.ExecutorStatistics;
 
 /**
  * FutureTask can wrap around {@link Callable} and {@link Runnable}.
@@ -35,19 +40,41 @@ import org.jdeferred.impl.DeferredObject;
  * When a task is canceled, {@link Deferred#reject(Object)} will be called with an instance of {@link CancellationException}
  * If any Exception occured, {@link Deferred#reject(Object)} will be called with the Exception instance.
  * 
+ * While a {@link LifecycleListener} or {@link ExecutorStatistics} is installed, the task records
+ * when it was queued, started and finished, see {@link #getQueuedTime()}, {@link #getStartedTime()} and {@link #getFinishedTime()}.
+ * 
  * @author Ray Tsang
  *
  * @param <D> Type used for {@link Deferred#resolve(Object)}
  * @param <P> Type used for {@link Deferred#notify(Object)}
  */
 public class DeferredFutureTask<D, P> extends FutureTask<D> {
+	public static final int DEFAULT_PRIORITY = 0;
+	
 	protected final Deferred<D, P> deferred;
 	protected final StartPolicy startPolicy;
 	
+	private volatile int priority = DEFAULT_PRIORITY;
+	private volatile boolean hasDeadline;
+	private volatile long deadline;
+	private volatile Object orderingKey;
+	private volatile LifecycleListener lifecycleListener = AbstractPromise.getDefaultLifecycleListener();
+	private volatile ExecutorStatistics statistics;
+	private volatile long queuedTime;
+	private volatile boolean started;
+	private volatile long startedTime;
+	private volatile long finishedTime;
+	private volatile boolean contextCaptured;
+	private volatile Object context;
+	
 	public DeferredFutureTask(Callable<D> callable) {
+		this(callable, StartPolicy.DEFAULT);
+	}
+	
+	public DeferredFutureTask(Callable<D> callable, StartPolicy startPolicy) {
 		super(callable);
 		this.deferred = new DeferredObject<D, P>();
-		this.startPolicy = StartPolicy.DEFAULT;
+		this.startPolicy = startPolicy;
 	}
 	
 	public DeferredFutureTask(Runnable runnable) {
@@ -56,10 +83,32 @@ public class DeferredFutureTask<D, P> extends FutureTask<D> {
 		this.startPolicy = StartPolicy.DEFAULT;
 	}
 	
+	/**
+	 * Creates a task settling <code>deferred</code> instead of a new {@link DeferredObject},
+	 * e.g., one confined to the thread that runs the task.
+	 * 
+	 * @see org.jdeferred.impl.EventLoopDeferredManager
+	 */
+	public DeferredFutureTask(Callable<D> callable, Deferred<D, P> deferred, StartPolicy startPolicy) {
+		super(callable);
+		this.deferred = deferred;
+		this.startPolicy = startPolicy;
+	}
+	
+	/**
+	 * @see #DeferredFutureTask(Callable, Deferred, StartPolicy)
+	 */
+	public DeferredFutureTask(Runnable runnable, Deferred<D, P> deferred, StartPolicy startPolicy) {
+		super(runnable, null);
+		this.deferred = deferred;
+		this.startPolicy = startPolicy;
+	}
+	
 	public DeferredFutureTask(DeferredCallable<D, P> callable) {
 		super(callable);
 		this.deferred = callable.getDeferred();
 		this.startPolicy = callable.getStartPolicy();
+		this.priority = callable.getPriority();
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -67,14 +116,86 @@ public class DeferredFutureTask<D, P> extends FutureTask<D> {
 		super(runnable, null);
 		this.deferred = (Deferred<D, P>) runnable.getDeferred();
 		this.startPolicy = runnable.getStartPolicy();
+		this.priority = runnable.getPriority();
 	}
 	
 	public Promise<D, P> promise() {
 		return deferred.promise();
 	}
 	
+	/**
+	 * Records the time this task was submitted for execution.  Called by {@link DeferredManager}
+	 * implementations right before handing the task to an executor.
+	 */
+	public void queued() {
+		LifecycleListener listener = lifecycleListener;
+		ExecutorStatistics statistics = this.statistics;
+		if (listener != null || statistics != null)
+			queuedTime = System.nanoTime();
+		if (statistics != null)
+			statistics.taskQueued();
+		if (listener != null)
+			listener.onTaskQueued(this);
+	}
+	
+	/**
+	 * Captures the caller's context, to be restored while this task runs.  Called by
+	 * {@link DeferredManager} implementations when the task is handed to them.
+	 * 
+	 * @see ContextPropagation
+	 */
+	public void captureContext() {
+		if (ContextPropagation.getPropagator() != null) {
+			context = ContextPropagation.capture();
+			contextCaptured = true;
+		}
+	}
+	
+	@Override
+	public void run() {
+		if (rejectIfPastDeadline())
+			return;
+		// a task cancelled or rejected while queued is done already and does not run
+		if (isDone())
+			return;
+		started();
+		if (!contextCaptured) {
+			super.run();
+			return;
+		}
+		Object previous = ContextPropagation.restore(context);
+		try {
+			super.run();
+		} finally {
+			ContextPropagation.restore(previous);
+		}
+	}
+	
+	/**
+	 * Records the start of this task, called by {@link #run()} unless the task is done already.
+	 */
+	private void started() {
+		started = true;
+		LifecycleListener listener = lifecycleListener;
+		ExecutorStatistics statistics = this.statistics;
+		if (listener != null || statistics != null)
+			startedTime = System.nanoTime();
+		if (statistics != null)
+			statistics.taskStarted(queuedTime, startedTime);
+		if (listener != null)
+			listener.onTaskStarted(this);
+	}
+	
 	@Override
 	protected void done() {
+		LifecycleListener listener = lifecycleListener;
+		ExecutorStatistics statistics = this.statistics;
+		if (listener != null || statistics != null)
+			finishedTime = System.nanoTime();
+		if (statistics != null)
+			statistics.taskFinished(queuedTime, startedTime, finishedTime);
+		if (listener != null)
+			listener.onTaskFinished(this);
 		try {
 			if (isCancelled()) {
 				deferred.reject(new CancellationException());
@@ -87,7 +208,142 @@ public class DeferredFutureTask<D, P> extends FutureTask<D> {
 		}
 	}
 
+	/**
+	 * Sets how urgent this task is for managers that schedule by priority, e.g.,
+	 * {@link org.jdeferred.impl.PriorityDeferredManager}.  Higher values run first;
+	 * other managers ignore it.
+	 * 
+	 * @param priority the priority, {@link #DEFAULT_PRIORITY} by default
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+	
+	public int getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Sets the time by which this task must have started.  A task still waiting at its
+	 * deadline is not run, its promise is rejected with a {@link TimeoutException}
+	 * instead.  Managers such as {@link org.jdeferred.impl.DeadlineDeferredManager} run
+	 * the task with the earliest deadline first.
+	 * 
+	 * @param timeout time from now until the deadline
+	 */
+	public void setDeadline(long timeout, TimeUnit unit) {
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.hasDeadline = true;
+	}
+	
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+	
+	/**
+	 * @return {@link System#nanoTime()} of the deadline, only meaningful if {@link #hasDeadline()}
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * Sets the key of tasks that must run one at a time, in submission order, on managers
+	 * such as {@link org.jdeferred.impl.KeyOrderedDeferredManager}.  Tasks with different keys,
+	 * or without a key, may run in parallel.  Other managers ignore it.
+	 * 
+	 * @param orderingKey the key, compared with {@link Object#equals(Object)}, or <code>null</code>
+	 */
+	public void setOrderingKey(Object orderingKey) {
+		this.orderingKey = orderingKey;
+	}
+	
+	public Object getOrderingKey() {
+		return orderingKey;
+	}
+	
+	/**
+	 * Rejects this task with a {@link TimeoutException} if its deadline passed.
+	 * 
+	 * @return <code>true</code> if the task was rejected
+	 */
+	public boolean rejectIfPastDeadline() {
+		if (!hasDeadline || System.nanoTime() - deadline < 0)
+			return false;
+		reject(new TimeoutException("deadline passed before the task started"));
+		return true;
+	}
+	
+	/**
+	 * Fails this task with <code>reason</code> without running it, e.g., when a
+	 * {@link DeferredManager} refuses to submit it.  Has no effect once the task ran.
+	 * 
+	 * @param reason the rejection of {@link #promise()}
+	 */
+	public void reject(Throwable reason) {
+		setException(reason);
+	}
+	
 	public StartPolicy getStartPolicy() {
 		return startPolicy;
 	}
+
+	/**
+	 * Installs a {@link LifecycleListener} for this task and its promise.
+	 * 
+	 * @param listener the listener, or <code>null</code> to disable lifecycle events
+	 */
+	public void setLifecycleListener(LifecycleListener listener) {
+		this.lifecycleListener = listener;
+		if (deferred instanceof AbstractPromise) {
+			((AbstractPromise<D, P>) deferred).setLifecycleListener(listener);
+		}
+	}
+
+	public LifecycleListener getLifecycleListener() {
+		return lifecycleListener;
+	}
+	
+	/**
+	 * Installs the {@link ExecutorStatistics} this task reports to while it is queued and run.
+	 * Must be set before {@link #queued()}.
+	 * 
+	 * @param statistics the statistics, or <code>null</code> to report nothing
+	 */
+	public void setStatistics(ExecutorStatistics statistics) {
+		this.statistics = statistics;
+	}
+	
+	public ExecutorStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the task was queued, or 0 if not recorded
+	 */
+	public long getQueuedTime() {
+		return queuedTime;
+	}
+
+	/**
+	 * @return <code>true</code> once the code of this task started running, i.e., never for
+	 * a task cancelled or rejected before it ran
+	 */
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the task started running, or 0 if not recorded
+	 */
+	public long getStartedTime() {
+		return startedTime;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the task finished running, or 0 if not recorded
+	 */
+	public long getFinishedTime() {
+		return finishedTime;
+	}
 }
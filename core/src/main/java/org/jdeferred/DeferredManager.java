@@ -74,7 +74,14 @@ public interface DeferredManager {
 		/**
 		 * Tells Deferred Manager that this task will be manually started
 		 */
-		MANAUL
+		MANAUL,
+		
+		/**
+		 * Tells Deferred Manager to start the task only once its promise is observed, i.e.,
+		 * when the first callback, filter or pipe is registered, or when somebody waits
+		 * for it.  A task whose promise is never observed never runs.
+		 */
+		LAZY
 	}
 	
 	/**
@@ -103,6 +110,52 @@ public interface DeferredManager {
 	 */
 	public abstract <D> Promise<D, Void> when(Callable<D> callable);
 	
+	/**
+	 * Single-flight variant of {@link #when(Callable)}: while a task submitted for
+	 * <code>key</code> is still in flight, further calls with an equal key return the
+	 * same {@link Promise} instead of submitting <code>callable</code> again.  Once the
+	 * task finished, the next call submits a new task.
+	 * 
+	 * Keyed tasks are always started, regardless of {@link StartPolicy}.
+	 * 
+	 * <pre>
+	 * <code>
+	 * dm.whenKeyed(userId, new Callable&lt;User&gt;() { ... })
+	 *   .done(new DoneCallback&lt;User&gt;() { ... });
+	 * </code>
+	 * </pre>
+	 * 
+	 * @param key identifies equivalent work, using {@link Object#equals(Object)}
+	 * @param callable the work to run if none is in flight for <code>key</code>
+	 * @return the promise of the in-flight task for <code>key</code>
+	 */
+	public abstract <K, D> Promise<D, Void> whenKeyed(K key, Callable<D> callable);
+
+	/**
+	 * Submits <code>callable</code>, and submits it again whenever it fails, as
+	 * long as <code>retryPolicy</code> allows it.  Retries wait on a timer, they do
+	 * not hold a thread of the manager in between attempts.
+	 * 
+	 * The returned promise resolves with the first successful attempt, or rejects
+	 * with the failure of the last attempt.  <code>callable</code> is called once
+	 * per attempt, so it must be safe to call repeatedly; {@link DeferredCallable}s
+	 * are run as plain {@link Callable}s.  Retried tasks are always started,
+	 * regardless of {@link StartPolicy}.
+	 * 
+	 * <pre>
+	 * <code>
+	 * dm.retry(new Callable&lt;Quote&gt;() { ... },
+	 *     RetryPolicies.exponentialBackoff(5, 100, 10000, TimeUnit.MILLISECONDS))
+	 *   .done(new DoneCallback&lt;Quote&gt;() { ... });
+	 * </code>
+	 * </pre>
+	 * 
+	 * @param callable the task to run
+	 * @param retryPolicy when and how often to retry
+	 * @return the promise of the first successful attempt
+	 */
+	public abstract <D> Promise<D, Void> retry(Callable<D> callable, RetryPolicy retryPolicy);
+
 	/**
 	 * Wraps {@link Future} and waits for {@link Future#get()} to return a result
 	 * in the background.
@@ -137,7 +190,8 @@ public interface DeferredManager {
 	 * implementation documentation.
 	 * 
 	 * @param task
-	 * @return {@link DeferredFutureTask#promise()}
+	 * @return {@link DeferredFutureTask#promise()}, or a promise that starts the
+	 * task when observed if its {@link StartPolicy} is {@link StartPolicy#LAZY}
 	 */
 	public abstract <D, P> Promise<D, P> when(
 			DeferredFutureTask<D, P> task);
@@ -13,15 +13,28 @@ import org.jdeferred.impl.DeferredObject;
  * @param <P> Type used for {@link Deferred#notify(Object)}
  */
 public abstract class DeferredRunnable<P> implements Runnable {
-	private final Deferred<Void, P> deferred = new DeferredObject<Void, P>();
+	private final DeferredObject<Void, P> deferred = new DeferredObject<Void, P>();
 	private final StartPolicy startPolicy;
+	private final int priority;
 	
 	public DeferredRunnable() {
-		this.startPolicy = StartPolicy.DEFAULT;
+		this(StartPolicy.DEFAULT, DeferredFutureTask.DEFAULT_PRIORITY);
 	}
 	
 	public DeferredRunnable(StartPolicy startPolicy) {
+		this(startPolicy, DeferredFutureTask.DEFAULT_PRIORITY);
+	}
+	
+	/**
+	 * @param priority see {@link DeferredFutureTask#setPriority(int)}
+	 */
+	public DeferredRunnable(int priority) {
+		this(StartPolicy.DEFAULT, priority);
+	}
+	
+	public DeferredRunnable(StartPolicy startPolicy, int priority) {
 		this.startPolicy = startPolicy;
+		this.priority = priority;
 	}
 	
 	/**
@@ -32,6 +45,25 @@ public abstract class DeferredRunnable<P> implements Runnable {
 		deferred.notify(progress);
 	}
 	
+	/**
+	 * Tells how many more progress values subscribers of {@link Promise#progressPublisher()}
+	 * are ready to receive.  Long running tasks can use this to hold back or coalesce
+	 * progress instead of overflowing slow consumers.
+	 * 
+	 * <pre>
+	 * <code>
+	 * if (progressDemand() > 0) {
+	 *   notify(chunk);
+	 * }
+	 * </code>
+	 * </pre>
+	 * 
+	 * @return outstanding demand of the slowest subscriber, or {@link Long#MAX_VALUE} if there is none
+	 */
+	protected long progressDemand() {
+		return deferred.progressDemand();
+	}
+	
 	protected Deferred<Void, P> getDeferred() {
 		return deferred;
 	}
@@ -39,4 +71,8 @@ public abstract class DeferredRunnable<P> implements Runnable {
 	public StartPolicy getStartPolicy() {
 		return startPolicy;
 	}
+
+	public int getPriority() {
+		return priority;
+	}
 }
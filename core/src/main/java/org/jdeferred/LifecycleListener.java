@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import org.jdeferred.impl.AbstractDeferredManager;
+import org.jdeferred.impl.AbstractPromise;
+import org.jdeferred.impl.LifecycleListenerAdapter;
+
+/**
+ * Receives lifecycle events of promises and of {@link DeferredFutureTask}s, e.g., to
+ * build histograms of queue time, run time and time-to-resolve.
+ * 
+ * A listener can be installed globally with {@link AbstractPromise#setDefaultLifecycleListener(LifecycleListener)},
+ * or per manager with {@link AbstractDeferredManager#setLifecycleListener(LifecycleListener)}.
+ * When no listener is installed, no events are created at all.
+ * 
+ * Events are delivered synchronously on the thread causing them, sometimes while the
+ * promise is locked, so implementations should be fast and must not throw.
+ * 
+ * <pre>
+ * <code>
+ * dm.setLifecycleListener(new LifecycleListenerAdapter() {
+ *   public void onTaskFinished(DeferredFutureTask&lt;?, ?&gt; task) {
+ *     queueTime.record(task.getStartedTime() - task.getQueuedTime());
+ *     runTime.record(task.getFinishedTime() - task.getStartedTime());
+ *   }
+ * });
+ * </code>
+ * </pre>
+ * 
+ * @see LifecycleListenerAdapter
+ * @author Ray Tsang
+ */
+public interface LifecycleListener {
+	/**
+	 * A promise was created, or handed to a manager that has this listener installed.
+	 * 
+	 * @param promise
+	 */
+	public void onPromiseCreated(Promise<?, ?> promise);
+
+	/**
+	 * @see Deferred#resolve(Object)
+	 * @param promise
+	 * @param resolved
+	 */
+	public void onPromiseResolved(Promise<?, ?> promise, Object resolved);
+
+	/**
+	 * @see Deferred#reject(Throwable)
+	 * @param promise
+	 * @param rejected
+	 */
+	public void onPromiseRejected(Promise<?, ?> promise, Throwable rejected);
+
+	/**
+	 * @see Deferred#cancel()
+	 * @param promise
+	 */
+	public void onPromiseCancelled(Promise<?, ?> promise);
+
+	/**
+	 * A {@link DoneCallback}, {@link FailCallback}, {@link ProgressCallback} or
+	 * {@link AlwaysCallback} is about to be triggered.
+	 * 
+	 * @param promise
+	 * @param callback
+	 */
+	public void onCallbackStarted(Promise<?, ?> promise, Object callback);
+
+	/**
+	 * A callback returned.
+	 * 
+	 * @param promise
+	 * @param callback
+	 * @param error the exception thrown by the callback, or <code>null</code>
+	 */
+	public void onCallbackFinished(Promise<?, ?> promise, Object callback, Throwable error);
+
+	/**
+	 * The task was submitted for execution.
+	 * 
+	 * @see DeferredFutureTask#getQueuedTime()
+	 * @param task
+	 */
+	public void onTaskQueued(DeferredFutureTask<?, ?> task);
+
+	/**
+	 * The task started running.
+	 * 
+	 * @see DeferredFutureTask#getStartedTime()
+	 * @param task
+	 */
+	public void onTaskStarted(DeferredFutureTask<?, ?> task);
+
+	/**
+	 * The task finished running, right before its promise is resolved or rejected.
+	 * 
+	 * @see DeferredFutureTask#getFinishedTime()
+	 * @param task
+	 */
+	public void onTaskFinished(DeferredFutureTask<?, ?> task);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import org.jdeferred.impl.ProgressStrategies;
+
+/**
+ * Decides how progress values reach a single {@link ProgressCallback}, e.g., every
+ * value inline, only the latest one, or a sample per time period.
+ * 
+ * @see Promise#progress(ProgressCallback, ProgressStrategy)
+ * @see ProgressStrategies
+ * @author Ray Tsang
+ */
+public interface ProgressStrategy {
+	/**
+	 * Wraps <code>callback</code> into the {@link ProgressCallback} that gets registered
+	 * with <code>promise</code>.
+	 * 
+	 * @param promise the promise the callback is registered with
+	 * @param callback the callback supplied by the user
+	 * @return the callback to register in place of <code>callback</code>
+	 */
+	public <D, P> ProgressCallback<P> apply(Promise<D, P> promise, ProgressCallback<P> callback);
+}
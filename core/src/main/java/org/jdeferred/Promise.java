@@ -15,6 +15,8 @@
  */
 package org.jdeferred;
 
+import org.jdeferred.flow.Publisher;
+
 /**
  * Promise interface to observe when some action has occurred on the corresponding {@link Deferred} object.
  * 
@@ -338,6 +340,41 @@ public interface Promise<D, P> {
 	 */
 	public Promise<D, P> progress(ProgressCallback<P> callback);
 
+	/**
+	 * Registers {@link ProgressCallback} like {@link #progress(ProgressCallback)}, but lets
+	 * <code>strategy</code> decide how progress values are delivered to it, e.g., only the
+	 * latest value, or a sample per time period, without blocking {@link Deferred#notify(Object)}.
+	 * 
+	 * @see org.jdeferred.impl.ProgressStrategies
+	 * @param callback
+	 * @param strategy
+	 * @return
+	 */
+	public Promise<D, P> progress(ProgressCallback<P> callback, ProgressStrategy strategy);
+
+	/**
+	 * Returns the progress channel of this promise as a {@link Publisher}, so that
+	 * consumers can pull progress values at their own pace instead of having
+	 * every {@link Deferred#notify(Object)} pushed into them.
+	 * 
+	 * <pre>
+	 * <code>
+	 * promise.progressPublisher().subscribe(new Subscriber&lt;Integer&gt;() {
+	 *   public void onSubscribe(Subscription subscription) {
+	 *     subscription.request(10);
+	 *   }
+	 *   ...
+	 * });
+	 * </code>
+	 * </pre>
+	 * 
+	 * Only progress notified after the first call of this method is published.
+	 * 
+	 * @see DeferredCallable#progressDemand()
+	 * @return a {@link Publisher} of this promise's progress, the same instance on every call
+	 */
+	public Publisher<P> progressPublisher();
+
 	/**
 	 * This method will wait as long as the State is Pending.  This method will fail fast
 	 * when State is not Pending.
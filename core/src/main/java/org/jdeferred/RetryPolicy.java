@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import org.jdeferred.impl.RetryPolicies;
+
+/**
+ * Decides whether, and after which delay, {@link DeferredManager#retry(java.util.concurrent.Callable, RetryPolicy)}
+ * submits a failed task again.
+ * 
+ * @see RetryPolicies
+ * @author Ray Tsang
+ */
+public interface RetryPolicy {
+	/**
+	 * @param retry number of the retry to schedule, 1 for the first one
+	 * @param failure why the previous attempt failed
+	 * @return delay in milliseconds before the retry is submitted, or a negative
+	 * value to give up and reject the promise with <code>failure</code>
+	 */
+	public long retryDelay(int retry, Throwable failure);
+}
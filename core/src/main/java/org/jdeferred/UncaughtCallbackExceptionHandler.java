@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import org.jdeferred.impl.AbstractDeferredManager;
+import org.jdeferred.impl.AbstractPromise;
+import org.jdeferred.impl.LoggingUncaughtCallbackExceptionHandler;
+import org.jdeferred.impl.RateLimitedUncaughtCallbackExceptionHandler;
+
+/**
+ * Handles exceptions thrown by {@link DoneCallback}, {@link FailCallback},
+ * {@link ProgressCallback} and {@link AlwaysCallback} while a promise triggers them.
+ * 
+ * A handler can be installed globally with
+ * {@link AbstractPromise#setDefaultUncaughtCallbackExceptionHandler(UncaughtCallbackExceptionHandler)},
+ * or per manager with
+ * {@link AbstractDeferredManager#setUncaughtCallbackExceptionHandler(UncaughtCallbackExceptionHandler)}.
+ * 
+ * @see LoggingUncaughtCallbackExceptionHandler
+ * @see RateLimitedUncaughtCallbackExceptionHandler
+ * @author Ray Tsang
+ */
+public interface UncaughtCallbackExceptionHandler {
+	/**
+	 * Called on the thread that triggered the callback.  Implementations must not throw.
+	 * 
+	 * @param promise the promise that triggered the callback
+	 * @param callback the callback that threw
+	 * @param exception the exception thrown by the callback
+	 */
+	public void uncaughtException(Promise<?, ?> promise, Object callback, Throwable exception);
+}
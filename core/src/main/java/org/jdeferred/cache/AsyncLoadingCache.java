@@ -0,0 +1,333 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Cache of promised values, loaded through a {@link DeferredManager}.
+ * 
+ * A miss stores the pending promise of the load right away, so concurrent misses
+ * for the same key wait on the same load instead of stampeding the loader.
+ * Rejected loads are evicted as soon as they fail.
+ * 
+ * <ul>
+ * <li>The cache holds at most <code>maximumSize</code> loaded entries.  To make room,
+ * it looks at the least recently used entries and evicts the one that was accessed
+ * least often lately.</li>
+ * <li>{@link #setExpireAfterWrite(long, TimeUnit)} sets the time to live of loaded entries;
+ * {@link #put(Object, Object, long, TimeUnit)} overrides it for a single entry.</li>
+ * <li>{@link #setRefreshAfterWrite(long, TimeUnit)} reloads entries that are still read
+ * once they reach that age, before they expire.  The current value is served until
+ * the reload is done, and kept if the reload fails.</li>
+ * </ul>
+ * 
+ * <pre>
+ * <code>
+ * AsyncLoadingCache&lt;String, User&gt; users = new AsyncLoadingCache&lt;String, User&gt;(dm, loader, 10000);
+ * users.setExpireAfterWrite(10, TimeUnit.MINUTES);
+ * users.setRefreshAfterWrite(8, TimeUnit.MINUTES);
+ * 
+ * users.get(userId).done(new DoneCallback&lt;User&gt;() { ... });
+ * </code>
+ * </pre>
+ * 
+ * Keys must not be <code>null</code>.  Loads are always started, regardless of the
+ * {@link StartPolicy} of the manager.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class AsyncLoadingCache<K, V> {
+	private static final int EVICTION_SAMPLE_SIZE = 8;
+	
+	private final DeferredManager deferredManager;
+	private final CacheLoader<K, V> loader;
+	private final int maximumSize;
+	
+	// guarded by this
+	private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<K, Entry>(16, 0.75f, true);
+	private final FrequencySketch sketch;
+	private int loadedCount;
+	private long evictionCount;
+	
+	private volatile long expireAfterWriteNanos;
+	private volatile long refreshAfterWriteNanos;
+	
+	public AsyncLoadingCache(DeferredManager deferredManager, CacheLoader<K, V> loader, int maximumSize) {
+		if (deferredManager == null || loader == null)
+			throw new NullPointerException();
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException("maximumSize must be positive");
+		
+		this.deferredManager = deferredManager;
+		this.loader = loader;
+		this.maximumSize = maximumSize;
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+	
+	/**
+	 * @param duration time to live of entries, counted from the end of their load;
+	 * 0 to keep entries until they are evicted for size
+	 */
+	public void setExpireAfterWrite(long duration, TimeUnit unit) {
+		this.expireAfterWriteNanos = unit.toNanos(duration);
+	}
+	
+	public long getExpireAfterWrite(TimeUnit unit) {
+		return unit.convert(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @param duration age at which entries that are read get reloaded in the background;
+	 * 0 to disable refresh-ahead
+	 */
+	public void setRefreshAfterWrite(long duration, TimeUnit unit) {
+		this.refreshAfterWriteNanos = unit.toNanos(duration);
+	}
+	
+	public long getRefreshAfterWrite(TimeUnit unit) {
+		return unit.convert(refreshAfterWriteNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Returns the cached promise of <code>key</code>, or starts loading it.
+	 * 
+	 * @param key the key to look up
+	 * @return the promise of the value, possibly still pending
+	 */
+	public Promise<V, ?> get(K key) {
+		DeferredFutureTask<V, Void> load = null;
+		DeferredFutureTask<V, Void> refresh = null;
+		Entry entry;
+		Promise<V, ?> promise;
+		
+		synchronized (this) {
+			long now = System.nanoTime();
+			sketch.increment(key);
+			entry = entries.get(key);
+			if (entry != null && entry.isExpired(now)) {
+				remove(entry);
+				entry = null;
+			}
+			
+			if (entry == null) {
+				load = newLoad(key);
+				entry = new Entry(key, load.promise(), expireAfterWriteNanos);
+				entries.put(key, entry);
+			} else if (entry.needsRefresh(now, refreshAfterWriteNanos)) {
+				refresh = newLoad(key);
+				entry.refreshing = true;
+			}
+			promise = entry.promise;
+		}
+		
+		if (load != null) {
+			load.promise().always(new LoadCallback(entry, load.promise(), false));
+			deferredManager.when(load);
+		}
+		if (refresh != null) {
+			refresh.promise().always(new LoadCallback(entry, refresh.promise(), true));
+			deferredManager.when(refresh);
+		}
+		return promise;
+	}
+	
+	/**
+	 * @return the cached promise of <code>key</code>, or <code>null</code> if there is none
+	 */
+	public synchronized Promise<V, ?> getIfPresent(K key) {
+		Entry entry = entries.get(key);
+		if (entry == null)
+			return null;
+		if (entry.isExpired(System.nanoTime())) {
+			remove(entry);
+			return null;
+		}
+		sketch.increment(key);
+		return entry.promise;
+	}
+	
+	/**
+	 * Caches a loaded value, replacing any entry of <code>key</code>.
+	 */
+	public void put(K key, V value) {
+		put(key, value, expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Caches a loaded value with its own time to live, replacing any entry of <code>key</code>.
+	 * 
+	 * @param timeToLive time to live of this entry, 0 to keep it until it is evicted for size
+	 */
+	public synchronized void put(K key, V value, long timeToLive, TimeUnit unit) {
+		Entry previous = entries.get(key);
+		if (previous != null)
+			remove(previous);
+		
+		Entry entry = new Entry(key, new DeferredObject<V, Void>().resolve(value).promise(), unit.toNanos(timeToLive));
+		entries.put(key, entry);
+		loaded(entry, System.nanoTime());
+	}
+	
+	public synchronized void invalidate(K key) {
+		Entry entry = entries.get(key);
+		if (entry != null)
+			remove(entry);
+	}
+	
+	public synchronized void invalidateAll() {
+		entries.clear();
+		loadedCount = 0;
+	}
+	
+	/**
+	 * @return number of entries, including pending loads
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return number of entries evicted to keep the cache within its maximum size
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	private DeferredFutureTask<V, Void> newLoad(final K key) {
+		return new DeferredFutureTask<V, Void>(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				return loader.load(key);
+			}
+		}, StartPolicy.AUTO);
+	}
+	
+	// guarded by this
+	private void loaded(Entry entry, long now) {
+		if (!entry.loaded) {
+			entry.loaded = true;
+			loadedCount++;
+		}
+		entry.loadedTime = now;
+		entry.expirationTime = entry.timeToLive > 0 ? now + entry.timeToLive : 0;
+		evictIfNeeded();
+	}
+	
+	// guarded by this
+	private void remove(Entry entry) {
+		entries.remove(entry.key);
+		if (entry.loaded)
+			loadedCount--;
+	}
+	
+	/**
+	 * Evicts, among the least recently used loaded entries, the one with the lowest
+	 * access frequency.  Pending loads are never evicted, they would lose their waiters.
+	 */
+	// guarded by this
+	private void evictIfNeeded() {
+		while (loadedCount > maximumSize) {
+			Entry victim = null;
+			int victimFrequency = Integer.MAX_VALUE;
+			int sampled = 0;
+			
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext() && sampled < EVICTION_SAMPLE_SIZE) {
+				Entry candidate = it.next();
+				if (!candidate.loaded)
+					continue;
+				sampled++;
+				int frequency = sketch.frequency(candidate.key);
+				if (frequency < victimFrequency) {
+					victim = candidate;
+					victimFrequency = frequency;
+				}
+			}
+			
+			remove(victim);
+			evictionCount++;
+		}
+	}
+	
+	private class Entry {
+		final K key;
+		final long timeToLive;
+		
+		// guarded by AsyncLoadingCache.this
+		Promise<V, ?> promise;
+		boolean loaded;
+		boolean refreshing;
+		long loadedTime;
+		long expirationTime;
+		
+		Entry(K key, Promise<V, ?> promise, long timeToLive) {
+			this.key = key;
+			this.promise = promise;
+			this.timeToLive = timeToLive;
+		}
+		
+		boolean isExpired(long now) {
+			return loaded && timeToLive > 0 && now - expirationTime >= 0;
+		}
+		
+		boolean needsRefresh(long now, long refreshAfterWrite) {
+			return loaded && !refreshing && refreshAfterWrite > 0 && now - loadedTime >= refreshAfterWrite;
+		}
+	}
+	
+	private class LoadCallback implements AlwaysCallback<V> {
+		private final Entry entry;
+		private final Promise<V, ?> promise;
+		private final boolean refresh;
+		
+		LoadCallback(Entry entry, Promise<V, ?> promise, boolean refresh) {
+			this.entry = entry;
+			this.promise = promise;
+			this.refresh = refresh;
+		}
+		
+		@Override
+		public void onAlways(Promise.State state, V resolved, Throwable rejected) {
+			synchronized (AsyncLoadingCache.this) {
+				if (refresh)
+					entry.refreshing = false;
+				if (entries.get(entry.key) != entry)
+					return;
+				
+				if (state == Promise.State.RESOLVED) {
+					entry.promise = promise;
+					loaded(entry, System.nanoTime());
+				} else if (!refresh) {
+					remove(entry);
+				}
+			}
+		}
+	}
+}
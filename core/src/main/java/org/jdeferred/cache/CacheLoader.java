@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+/**
+ * Computes the value of a key for an {@link AsyncLoadingCache}.  Loads are
+ * submitted to the cache's {@link org.jdeferred.DeferredManager}, so this
+ * may block.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public interface CacheLoader<K, V> {
+	/**
+	 * @param key the key to load, never <code>null</code>
+	 * @return the value of <code>key</code>
+	 * @throws Exception to reject the load; the failed entry is evicted right away
+	 */
+	public V load(K key) throws Exception;
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+/**
+ * Count-min sketch estimating how often keys were accessed lately, with four
+ * saturating counters per key.  All counters are halved once the number of
+ * increments reaches ten times the cache size, so that old popularity fades.
+ * 
+ * Not thread safe, {@link AsyncLoadingCache} guards it with its own lock.
+ * 
+ * @author Ray Tsang
+ */
+class FrequencySketch {
+	private static final int MAX_COUNT = 15;
+	private static final int[] SEEDS = { 0x97cb3127, 0xb4b82e21, 0x8f2a3d6b, 0xc5b9a7e3 };
+	
+	private final int[] table;
+	private final int mask;
+	private final int sampleSize;
+	private int size;
+	
+	FrequencySketch(int maximumSize) {
+		int capacity = 16;
+		while (capacity < maximumSize && capacity < (1 << 30))
+			capacity <<= 1;
+		this.table = new int[capacity];
+		this.mask = capacity - 1;
+		this.sampleSize = maximumSize > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximumSize;
+	}
+	
+	void increment(Object key) {
+		int hash = key.hashCode();
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int index = indexOf(hash, i);
+			if (table[index] < MAX_COUNT) {
+				table[index]++;
+				added = true;
+			}
+		}
+		if (added && ++size >= sampleSize)
+			reset();
+	}
+	
+	int frequency(Object key) {
+		int hash = key.hashCode();
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			frequency = Math.min(frequency, table[indexOf(hash, i)]);
+		}
+		return frequency;
+	}
+	
+	private int indexOf(int hash, int i) {
+		int h = (hash + SEEDS[i]) * SEEDS[i];
+		h ^= h >>> 16;
+		return h & mask;
+	}
+	
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] >>>= 1;
+		}
+		size >>>= 1;
+	}
+}
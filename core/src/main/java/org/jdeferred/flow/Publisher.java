@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.flow;
+
+/**
+ * A producer of a demand-driven stream of items, shaped after
+ * {@code java.util.concurrent.Flow.Publisher} so that it can be adapted
+ * one-to-one on Java 9 and later.
+ * 
+ * @see org.jdeferred.Promise#progressPublisher()
+ * @author Ray Tsang
+ *
+ * @param <T> Type of the published items
+ */
+public interface Publisher<T> {
+	/**
+	 * Adds the given {@link Subscriber}.  {@link Subscriber#onSubscribe(Subscription)}
+	 * is always called first, and items are only delivered once they have been
+	 * requested through {@link Subscription#request(long)}.
+	 * 
+	 * @param subscriber
+	 */
+	public void subscribe(Subscriber<? super T> subscriber);
+}
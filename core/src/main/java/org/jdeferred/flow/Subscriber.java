@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.flow;
+
+/**
+ * A receiver of items from a {@link Publisher}, shaped after
+ * {@code java.util.concurrent.Flow.Subscriber}.
+ * 
+ * Signals to a single {@link Subscriber} are never invoked concurrently.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <T> Type of the received items
+ */
+public interface Subscriber<T> {
+	/**
+	 * Invoked before any other signal.  No items are delivered until
+	 * {@link Subscription#request(long)} is called.
+	 * 
+	 * @param subscription
+	 */
+	public void onSubscribe(Subscription subscription);
+
+	/**
+	 * Invoked with the next item, at most as many times as requested.
+	 * 
+	 * @param item
+	 */
+	public void onNext(T item);
+
+	/**
+	 * Invoked when the stream failed.  No other signals follow.
+	 * 
+	 * @param throwable
+	 */
+	public void onError(Throwable throwable);
+
+	/**
+	 * Invoked when the stream finished successfully.  No other signals follow.
+	 */
+	public void onComplete();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.flow;
+
+/**
+ * Links a {@link Publisher} and a {@link Subscriber}, shaped after
+ * {@code java.util.concurrent.Flow.Subscription}.
+ * 
+ * @author Ray Tsang
+ */
+public interface Subscription {
+	/**
+	 * Adds <code>n</code> items to the outstanding demand of this subscription.
+	 * A non-positive <code>n</code> terminates the subscription with an
+	 * {@link IllegalArgumentException}.
+	 * 
+	 * @param n
+	 */
+	public void request(long n);
+
+	/**
+	 * Stops delivery of items.  Items already buffered for this subscription are discarded.
+	 */
+	public void cancel();
+}
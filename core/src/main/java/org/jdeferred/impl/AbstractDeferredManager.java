@@ -16,14 +16,26 @@
 package org.jdeferred.impl;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.jdeferred.AlwaysCallback;
 import org.jdeferred.DeferredCallable;
 import org.jdeferred.DeferredFutureTask;
 import org.jdeferred.DeferredManager;
 import org.jdeferred.DeferredRunnable;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.LifecycleListener;
 import org.jdeferred.Promise;
+import org.jdeferred.RetryPolicy;
+import org.jdeferred.UncaughtCallbackExceptionHandler;
 import org.jdeferred.multiple.MasterDeferredObject;
 import org.jdeferred.multiple.MasterProgress;
 import org.jdeferred.multiple.MultipleResults;
@@ -34,6 +46,16 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractDeferredManager implements DeferredManager {
 	private static final Logger log = LoggerFactory.getLogger(AbstractDeferredManager.class);
 	
+	private volatile LifecycleListener lifecycleListener;
+	private volatile UncaughtCallbackExceptionHandler uncaughtCallbackExceptionHandler;
+	private final ConcurrentMap<Object, Promise> keyedPromises = new ConcurrentHashMap<Object, Promise>();
+	private volatile ScheduledExecutorService scheduler;
+	private volatile RetryBudget retryBudget;
+	private volatile CircuitBreaker circuitBreaker;
+	private volatile RateLimiter rateLimiter;
+	private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private volatile ExecutorStatistics statistics;
+	
 	protected abstract void submit(Runnable runnable);
 	protected abstract void submit(Callable callable);
 	
@@ -52,6 +74,127 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 	 */
 	public abstract boolean isAutoSubmit();
 	
+	/**
+	 * Installs a {@link LifecycleListener} for the tasks and promises handed to this manager,
+	 * in place of {@link org.jdeferred.impl.AbstractPromise#getDefaultLifecycleListener()}.
+	 * 
+	 * @param lifecycleListener the listener, or <code>null</code> to fall back to the default one
+	 */
+	public void setLifecycleListener(LifecycleListener lifecycleListener) {
+		this.lifecycleListener = lifecycleListener;
+	}
+	
+	public LifecycleListener getLifecycleListener() {
+		return lifecycleListener;
+	}
+	
+	/**
+	 * Installs an {@link UncaughtCallbackExceptionHandler} for the promises of tasks handed to this manager,
+	 * in place of {@link AbstractPromise#getDefaultUncaughtCallbackExceptionHandler()}.
+	 * 
+	 * @param uncaughtCallbackExceptionHandler the handler, or <code>null</code> to fall back to the default one
+	 */
+	public void setUncaughtCallbackExceptionHandler(UncaughtCallbackExceptionHandler uncaughtCallbackExceptionHandler) {
+		this.uncaughtCallbackExceptionHandler = uncaughtCallbackExceptionHandler;
+	}
+	
+	public UncaughtCallbackExceptionHandler getUncaughtCallbackExceptionHandler() {
+		return uncaughtCallbackExceptionHandler;
+	}
+	
+	/**
+	 * Sets the timer used to delay work, e.g., retries.  It must only hand work off
+	 * to the manager, not run it.
+	 * 
+	 * @param scheduler the timer, or <code>null</code> to use a daemon timer shared by all managers
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	public ScheduledExecutorService getScheduler() {
+		ScheduledExecutorService scheduler = this.scheduler;
+		return scheduler != null ? scheduler : SharedScheduler.get();
+	}
+	
+	/**
+	 * Limits the retries of {@link #retry(Callable, RetryPolicy)} across all tasks of this manager.
+	 * 
+	 * @param retryBudget the budget, or <code>null</code> to only apply the {@link RetryPolicy} of each task
+	 */
+	public void setRetryBudget(RetryBudget retryBudget) {
+		this.retryBudget = retryBudget;
+	}
+	
+	public RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+	
+	/**
+	 * Guards the tasks submitted by this manager with a {@link CircuitBreaker}.  While it
+	 * is open, tasks are rejected without reaching the executor.
+	 * 
+	 * @param circuitBreaker the breaker, or <code>null</code> to submit every task
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+	
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+	
+	/**
+	 * Limits the rate at which this manager submits tasks.  Tasks over the limit are
+	 * delayed on {@link #getScheduler()} or rejected, as configured on the limiter.
+	 * 
+	 * @param rateLimiter the limiter, or <code>null</code> to submit tasks right away
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+	
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Limits the number of tasks this manager has in flight, adapting the limit to
+	 * their latency.  Tasks over the limit wait without being submitted, or are rejected,
+	 * as configured on the limiter.
+	 * 
+	 * @param concurrencyLimiter the limiter, or <code>null</code> to submit tasks right away
+	 */
+	public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+	
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+	
+	/**
+	 * Enables or disables {@link #getStatistics()}.  Disabled by default; enabling it
+	 * starts from zero.
+	 * 
+	 * @param collectStatistics
+	 */
+	public void setCollectStatistics(boolean collectStatistics) {
+		this.statistics = collectStatistics ? new ExecutorStatistics() : null;
+	}
+	
+	public boolean isCollectStatistics() {
+		return statistics != null;
+	}
+	
+	/**
+	 * @return gauges of the tasks submitted while {@link #setCollectStatistics(boolean)}
+	 * was enabled, or <code>null</code> if it is disabled
+	 */
+	public ExecutorStatistics getStatistics() {
+		return statistics;
+	}
+	
 	@Override
 	public Promise<MultipleResults, MasterProgress> when(Runnable... runnables) {
 		assertNotEmpty(runnables);
@@ -137,7 +280,9 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 	@Override
 	public Promise<MultipleResults, MasterProgress> when(Promise... promises) {
 		assertNotEmpty(promises);
-		return new MasterDeferredObject(promises).promise();
+		MasterDeferredObject master = new MasterDeferredObject(promises);
+		configure(master);
+		return master.promise();
 	}
 
 	@Override
@@ -184,13 +329,113 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 	@Override
 	public <D, P> Promise<D, P> when(
 			DeferredFutureTask<D, P> task) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener != null)
+			task.setLifecycleListener(listener);
+		ExecutorStatistics stats = statistics;
+		if (stats != null)
+			task.setStatistics(stats);
+		if (task.promise() instanceof AbstractPromise)
+			configure((AbstractPromise<?, ?>) task.promise());
+		task.captureContext();
+		
+		if (task.getStartPolicy() == StartPolicy.LAZY)
+			return new LazyPromise<D, P>(this, task);
 		if (task.getStartPolicy() == StartPolicy.AUTO 
-				|| (task.getStartPolicy() == StartPolicy.DEFAULT && isAutoSubmit()))
-			submit(task);
+				|| (task.getStartPolicy() == StartPolicy.DEFAULT && isAutoSubmit())) {
+			start(task);
+		}
 		
 		return task.promise();
 	}
 	
+	/**
+	 * Submits a task, subject to the rate limiter, circuit breaker and concurrency limiter
+	 * of this manager.
+	 * 
+	 * @param task
+	 */
+	void start(DeferredFutureTask<?, ?> task) {
+		RateLimiter limiter = rateLimiter;
+		long delay = limiter == null ? 0 : limiter.reserve();
+		if (delay < 0) {
+			task.reject(new RateLimitExceededException("task rate exceeded"));
+		} else if (delay > 0) {
+			submitLater(task, delay);
+		} else {
+			submitGuarded(task);
+		}
+	}
+	
+	private void submitGuarded(DeferredFutureTask<?, ?> task) {
+		if (task.rejectIfPastDeadline())
+			return;
+		CircuitBreaker breaker = circuitBreaker;
+		if (breaker != null && !breaker.admit(task))
+			return;
+		AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+		if (limiter != null) {
+			if (limiter.tryAcquire(task))
+				new LimitedTask(limiter, task).submit();
+			return;
+		}
+		task.queued();
+		submit(task);
+	}
+	
+	private void submitLater(final DeferredFutureTask<?, ?> task, long delayNanos) {
+		try {
+			getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						submitGuarded(task);
+					} catch (RejectedExecutionException e) {
+						task.reject(e);
+					}
+				}
+			}, delayNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			task.reject(e);
+		}
+	}
+	
+	@Override
+	public <K, D> Promise<D, Void> whenKeyed(final K key, Callable<D> callable) {
+		Promise<D, Void> inFlight = keyedPromises.get(key);
+		if (inFlight != null)
+			return inFlight;
+		
+		DeferredFutureTask<D, Void> task = new DeferredFutureTask<D, Void>(callable, StartPolicy.AUTO);
+		final Promise<D, Void> promise = task.promise();
+		
+		inFlight = keyedPromises.putIfAbsent(key, promise);
+		if (inFlight != null)
+			return inFlight;
+		
+		promise.always(new AlwaysCallback<D>() {
+			@Override
+			public void onAlways(Promise.State state, D resolved, Throwable rejected) {
+				keyedPromises.remove(key, promise);
+			}
+		});
+		
+		return when(task);
+	}
+	
+	@Override
+	public <D> Promise<D, Void> retry(Callable<D> callable, RetryPolicy retryPolicy) {
+		DeferredObject<D, Void> deferred = new DeferredObject<D, Void>();
+		configure(deferred);
+		
+		RetryBudget budget = retryBudget;
+		if (budget != null)
+			budget.deposit();
+		
+		new RetryingTask<D>(callable, retryPolicy, budget, deferred).run();
+		return deferred.promise();
+	}
+	
 	@Override
 	public <D> Promise<D, Void> when(final Future<D> future) {
 		// make sure the task is automatically started
@@ -211,9 +456,131 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 		});
 	}
 	
+	/**
+	 * Applies the per-manager settings to a promise created on behalf of this manager.
+	 * 
+	 * @param promise
+	 */
+	protected void configure(AbstractPromise<?, ?> promise) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener != null)
+			promise.setLifecycleListener(listener);
+		UncaughtCallbackExceptionHandler handler = uncaughtCallbackExceptionHandler;
+		if (handler != null)
+			promise.setUncaughtCallbackExceptionHandler(handler);
+	}
+	
 	protected void assertNotEmpty(Object[] objects) {
 		if (objects == null || objects.length == 0)
 			throw new IllegalArgumentException(
 					"Arguments is null or its length is empty");
 	}	
+	
+	/**
+	 * Holds a slot of an {@link AdaptiveConcurrencyLimiter} until its task completes,
+	 * then hands the slot to the next waiting task.
+	 */
+	private class LimitedTask implements AlwaysCallback<Object> {
+		private final AdaptiveConcurrencyLimiter limiter;
+		private final DeferredFutureTask<?, ?> task;
+		private final AtomicBoolean submitting = new AtomicBoolean(true);
+		private long submittedTime;
+		
+		LimitedTask(AdaptiveConcurrencyLimiter limiter, DeferredFutureTask<?, ?> task) {
+			this.limiter = limiter;
+			this.task = task;
+		}
+		
+		/**
+		 * Submits the task.  Tasks that finish while being submitted, e.g., expired,
+		 * cancelled or refused by the executor, hand their slot on in this loop rather
+		 * than from {@link #onAlways}, so a long queue of them does not recurse.
+		 */
+		void submit() {
+			LimitedTask current = this;
+			do {
+				current = current.submitOnce();
+			} while (current != null);
+		}
+		
+		/**
+		 * @return the task taking over the slot if this one finished while being submitted
+		 */
+		private LimitedTask submitOnce() {
+			submittedTime = System.nanoTime();
+			((Promise<Object, ?>) task.promise()).always(this);
+			if (!task.rejectIfPastDeadline()) {
+				try {
+					task.queued();
+					AbstractDeferredManager.this.submit(task);
+				} catch (RejectedExecutionException e) {
+					task.reject(e);
+				}
+			}
+			if (submitting.compareAndSet(true, false))
+				return null;
+			return release();
+		}
+		
+		@Override
+		public void onAlways(Promise.State state, Object resolved, Throwable rejected) {
+			if (submitting.compareAndSet(true, false))
+				return;
+			LimitedTask next = release();
+			if (next != null)
+				next.submit();
+		}
+		
+		private LimitedTask release() {
+			// a task rejected or cancelled before it ran says nothing about the latency
+			long latency = task.isStarted() ? System.nanoTime() - submittedTime : -1;
+			DeferredFutureTask<?, ?> next = limiter.release(latency);
+			return next == null ? null : new LimitedTask(limiter, next);
+		}
+	}
+	
+	private class RetryingTask<D> implements Runnable, DoneCallback<D>, FailCallback {
+		private final Callable<D> callable;
+		private final RetryPolicy retryPolicy;
+		private final RetryBudget budget;
+		private final DeferredObject<D, Void> deferred;
+		private int retries;
+		
+		RetryingTask(Callable<D> callable, RetryPolicy retryPolicy, RetryBudget budget, DeferredObject<D, Void> deferred) {
+			this.callable = callable;
+			this.retryPolicy = retryPolicy;
+			this.budget = budget;
+			this.deferred = deferred;
+		}
+		
+		/**
+		 * Submits the next attempt.
+		 */
+		@Override
+		public void run() {
+			DeferredFutureTask<D, Void> task = new DeferredFutureTask<D, Void>(callable, StartPolicy.AUTO);
+			task.promise().done(this).fail(this);
+			when(task);
+		}
+		
+		@Override
+		public void onDone(D result) {
+			deferred.resolve(result);
+		}
+		
+		@Override
+		public void onFail(Throwable failure) {
+			long delay = retryPolicy.retryDelay(++retries, failure);
+			if (delay < 0 || (budget != null && !budget.tryWithdraw())) {
+				deferred.reject(failure);
+				return;
+			}
+			
+			try {
+				getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				deferred.reject(failure);
+			}
+		}
+	}
 }
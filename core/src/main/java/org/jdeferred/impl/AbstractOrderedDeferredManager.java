@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DefaultDeferredManager} running waiting tasks in the order of a comparator,
+ * on a fixed number of threads.  Tasks that compare equal run in submission order.
+ * The comparator reads what it orders by, e.g., the priority, from the waiting tasks,
+ * so that must not change while a task waits.
+ * 
+ * @see PriorityDeferredManager
+ * @see DeadlineDeferredManager
+ * @author Ray Tsang
+ */
+abstract class AbstractOrderedDeferredManager extends DefaultDeferredManager {
+	private final Comparator<? super OrderedTask> comparator;
+	private final AtomicLong sequence = new AtomicLong();
+	
+	/**
+	 * @param nThreads number of threads running tasks
+	 * @param comparator orders the waiting tasks, first the one to run first
+	 */
+	AbstractOrderedDeferredManager(int nThreads, Comparator<? super OrderedTask> comparator) {
+		super(new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>()));
+		this.comparator = comparator;
+	}
+	
+	@Override
+	protected void execute(Runnable runnable) {
+		super.execute(new OrderedTask(runnable, System.nanoTime(), sequence.getAndIncrement()));
+	}
+	
+	/**
+	 * Unwraps the tasks that never ran.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (Runnable runnable : super.shutdownNow()) {
+			tasks.add(runnable instanceof OrderedTask ? ((OrderedTask) runnable).task : runnable);
+		}
+		return tasks;
+	}
+	
+	/**
+	 * A waiting task, as seen by the comparator.
+	 */
+	final class OrderedTask implements Runnable, Comparable<OrderedTask> {
+		final Runnable task;
+		final long submittedTime;
+		private final long sequence;
+		
+		OrderedTask(Runnable task, long submittedTime, long sequence) {
+			this.task = task;
+			this.submittedTime = submittedTime;
+			this.sequence = sequence;
+		}
+		
+		@Override
+		public void run() {
+			task.run();
+		}
+		
+		@Override
+		public int compareTo(OrderedTask other) {
+			int order = comparator.compare(this, other);
+			if (order != 0)
+				return order;
+			long diff = sequence - other.sequence;
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	}
+}
@@ -15,7 +15,9 @@
  */
 package org.jdeferred.impl;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jdeferred.AlwaysCallback;
@@ -25,12 +27,14 @@ import org.jdeferred.DonePipe;
 import org.jdeferred.FailCallback;
 import org.jdeferred.FailFilter;
 import org.jdeferred.FailPipe;
+import org.jdeferred.LifecycleListener;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.ProgressFilter;
 import org.jdeferred.ProgressPipe;
+import org.jdeferred.ProgressStrategy;
 import org.jdeferred.Promise;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.jdeferred.UncaughtCallbackExceptionHandler;
+import org.jdeferred.flow.Publisher;
 
 
 /**
@@ -39,18 +43,226 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 
-	private static final Logger log = LoggerFactory.getLogger(AbstractPromise.class);
+	private static final Object NO_CONTEXT = new Object();
 
-	protected volatile State state = State.PENDING;
+	private static volatile LifecycleListener defaultLifecycleListener;
+	private static volatile UncaughtCallbackExceptionHandler defaultUncaughtCallbackExceptionHandler
+			= new LoggingUncaughtCallbackExceptionHandler();
 
-	protected final List<DoneCallback<D>> doneCallbacks = new CopyOnWriteArrayList<DoneCallback<D>>();
-	protected final List<FailCallback> failCallbacks = new CopyOnWriteArrayList<FailCallback>();
-	protected final List<ProgressCallback<P>> progressCallbacks = new CopyOnWriteArrayList<ProgressCallback<P>>();
-	protected final List<AlwaysCallback<D>> alwaysCallbacks = new CopyOnWriteArrayList<AlwaysCallback<D>>();
+	/**
+	 * Left <code>null</code> by subclasses that keep their state themselves, see
+	 * {@link #AbstractPromise(boolean)}.
+	 */
+	protected volatile State state;
+
+	/**
+	 * <code>null</code> unless lifecycle events are requested
+	 * @see #setLifecycleListener(LifecycleListener)
+	 */
+	protected volatile LifecycleListener lifecycleListener;
+	private volatile long createdTime;
+
+	/**
+	 * <code>null</code> to use {@link #getDefaultUncaughtCallbackExceptionHandler()}
+	 */
+	protected volatile UncaughtCallbackExceptionHandler uncaughtCallbackExceptionHandler;
+
+	private final PromiseLeakDetector.Record leakRecord = PromiseLeakDetector.track(this);
+
+	/**
+	 * Context snapshot captured with the first registered callback, shared by all callbacks
+	 * registered from the same context.  Callbacks registered from another context are kept
+	 * in {@link #callbackContexts}.  Both are guarded by <code>this</code>, or confined to
+	 * the loop thread of an {@link EventLoopDeferredObject}.
+	 * 
+	 * @see ContextPropagation
+	 */
+	private Object context = NO_CONTEXT;
+	private Map<Object, Object> callbackContexts;
+
+	/*
+	 * null in subclasses that keep their callbacks themselves, see AbstractPromise(boolean).
+	 */
+	protected final List<DoneCallback<D>> doneCallbacks;
+	protected final List<FailCallback> failCallbacks;
+	protected final List<ProgressCallback<P>> progressCallbacks;
+	protected final List<AlwaysCallback<D>> alwaysCallbacks;
 
 	protected D resolveResult;
 	protected Throwable rejectResult;
 
+	private volatile ProgressPublisher<D, P> progressPublisher;
+
+	public AbstractPromise() {
+		this(true);
+	}
+
+	/**
+	 * @param shared <code>false</code> for a subclass that overrides every method reading
+	 * {@link #state} or the callback lists, and keeps its state and callbacks itself, e.g.,
+	 * confined to one thread; neither is then initialized
+	 * @see EventLoopDeferredObject
+	 */
+	AbstractPromise(boolean shared) {
+		if (shared) {
+			this.state = State.PENDING;
+			this.doneCallbacks = new CopyOnWriteArrayList<DoneCallback<D>>();
+			this.failCallbacks = new CopyOnWriteArrayList<FailCallback>();
+			this.progressCallbacks = new CopyOnWriteArrayList<ProgressCallback<P>>();
+			this.alwaysCallbacks = new CopyOnWriteArrayList<AlwaysCallback<D>>();
+		} else {
+			this.doneCallbacks = null;
+			this.failCallbacks = null;
+			this.progressCallbacks = null;
+			this.alwaysCallbacks = null;
+		}
+		
+		LifecycleListener listener = defaultLifecycleListener;
+		if (listener != null) {
+			this.lifecycleListener = listener;
+			this.createdTime = System.nanoTime();
+			listener.onPromiseCreated(this);
+		}
+	}
+
+	/**
+	 * Stops leak tracking of this promise, called once it is no longer pending.
+	 * 
+	 * @see PromiseLeakDetector
+	 */
+	final void untrack() {
+		if (leakRecord != null)
+			leakRecord.close();
+	}
+
+	/**
+	 * Returns a finished promise to a pending state with no callbacks and default settings,
+	 * as if it was just created.  The caller must hold the monitor of this promise.
+	 * 
+	 * @see RecyclableDeferredObject
+	 */
+	void reset() {
+		resolveResult = null;
+		rejectResult = null;
+		clearIfNotEmpty(doneCallbacks);
+		clearIfNotEmpty(failCallbacks);
+		clearIfNotEmpty(progressCallbacks);
+		clearIfNotEmpty(alwaysCallbacks);
+		context = NO_CONTEXT;
+		callbackContexts = null;
+		progressPublisher = null;
+		uncaughtCallbackExceptionHandler = null;
+		lifecycleListener = null;
+		createdTime = 0;
+		state = State.PENDING;
+		
+		LifecycleListener listener = defaultLifecycleListener;
+		if (listener != null) {
+			this.lifecycleListener = listener;
+			this.createdTime = System.nanoTime();
+			listener.onPromiseCreated(this);
+		}
+	}
+	
+	private static void clearIfNotEmpty(List<?> callbacks) {
+		if (!callbacks.isEmpty())
+			callbacks.clear();
+	}
+
+	/**
+	 * Installs a {@link LifecycleListener} for all promises created afterwards, unless
+	 * they are handed to a manager with its own listener.
+	 * 
+	 * @param listener the listener, or <code>null</code> to disable lifecycle events
+	 */
+	public static void setDefaultLifecycleListener(LifecycleListener listener) {
+		defaultLifecycleListener = listener;
+	}
+
+	public static LifecycleListener getDefaultLifecycleListener() {
+		return defaultLifecycleListener;
+	}
+
+	/**
+	 * Replaces the {@link LifecycleListener} of this promise.  A new listener
+	 * receives {@link LifecycleListener#onPromiseCreated(Promise)} right away.
+	 * 
+	 * @param listener the listener, or <code>null</code> to disable lifecycle events
+	 */
+	public void setLifecycleListener(LifecycleListener listener) {
+		if (listener == lifecycleListener)
+			return;
+		this.lifecycleListener = listener;
+		if (listener != null) {
+			if (createdTime == 0)
+				createdTime = System.nanoTime();
+			listener.onPromiseCreated(this);
+		}
+	}
+
+	public LifecycleListener getLifecycleListener() {
+		return lifecycleListener;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when a {@link LifecycleListener} first saw this promise,
+	 * or 0 if lifecycle events were never enabled for it
+	 */
+	public long getCreatedTime() {
+		return createdTime;
+	}
+
+	/**
+	 * Installs the {@link UncaughtCallbackExceptionHandler} used by all promises that don't
+	 * have their own.  By default, every exception is logged by {@link LoggingUncaughtCallbackExceptionHandler}.
+	 * 
+	 * @param handler
+	 */
+	public static void setDefaultUncaughtCallbackExceptionHandler(UncaughtCallbackExceptionHandler handler) {
+		if (handler == null)
+			throw new NullPointerException("handler");
+		defaultUncaughtCallbackExceptionHandler = handler;
+	}
+
+	public static UncaughtCallbackExceptionHandler getDefaultUncaughtCallbackExceptionHandler() {
+		return defaultUncaughtCallbackExceptionHandler;
+	}
+
+	/**
+	 * @param handler the handler, or <code>null</code> to use {@link #getDefaultUncaughtCallbackExceptionHandler()}
+	 */
+	public void setUncaughtCallbackExceptionHandler(UncaughtCallbackExceptionHandler handler) {
+		this.uncaughtCallbackExceptionHandler = handler;
+	}
+
+	public UncaughtCallbackExceptionHandler getUncaughtCallbackExceptionHandler() {
+		UncaughtCallbackExceptionHandler handler = uncaughtCallbackExceptionHandler;
+		return handler == null ? defaultUncaughtCallbackExceptionHandler : handler;
+	}
+
+	/**
+	 * Passes an exception thrown by <code>callback</code> to {@link #getUncaughtCallbackExceptionHandler()}.
+	 * 
+	 * @param callback
+	 * @param exception
+	 */
+	protected void handleUncaughtCallbackException(Object callback, Throwable exception) {
+		getUncaughtCallbackExceptionHandler().uncaughtException(this, callback, exception);
+	}
+
+	/**
+	 * Carries the per-promise settings, i.e., {@link LifecycleListener} and
+	 * {@link UncaughtCallbackExceptionHandler}, over from the promise this one is chained to.
+	 * 
+	 * @param parent
+	 */
+	protected void inheritFrom(AbstractPromise<?, ?> parent) {
+		if (parent.uncaughtCallbackExceptionHandler != null)
+			this.uncaughtCallbackExceptionHandler = parent.uncaughtCallbackExceptionHandler;
+		if (parent.lifecycleListener != null)
+			setLifecycleListener(parent.lifecycleListener);
+	}
+
 	@Override
 	public State state() {
 		return state;
@@ -60,8 +272,9 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	public Promise<D, P> done(DoneCallback<D> callback) {
 		synchronized (this) {
 			if (isResolved()){
-				triggerDone(callback, resolveResult);
+				fireDone(callback, resolveResult);
 			}else{
+				captureContext(callback);
 				doneCallbacks.add(callback);
 			}
 		}
@@ -72,8 +285,9 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	public Promise<D, P> fail(FailCallback callback) {
 		synchronized (this) {
 			if(isRejected()){
-				triggerFail(callback, rejectResult);
+				fireFail(callback, rejectResult);
 			}else{
+				captureContext(callback);
 				failCallbacks.add(callback);
 			}
 		}
@@ -84,9 +298,10 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	public Promise<D, P> always(AlwaysCallback<D> callback) {
 		synchronized (this) {
 			if(isPending()){
+				captureContext(callback);
 				alwaysCallbacks.add(callback);
 			}else{
-				triggerAlways(callback, state, resolveResult, rejectResult);
+				fireAlways(callback, state, resolveResult, rejectResult);
 			}
 		}
 		return this;
@@ -105,10 +320,13 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	
 	protected void triggerDone(D resolved) {
 		for (DoneCallback<D> callback : doneCallbacks) {
+			Object previous = enterContext(callback);
 			try {
-				triggerDone(callback, resolved);
+				fireDone(callback, resolved);
 			} catch (Exception e) {
-				log.error("an uncaught exception occured in a DoneCallback", e);
+				handleUncaughtCallbackException(callback, e);
+			} finally {
+				exitContext(previous);
 			}
 		}
 		doneCallbacks.clear();
@@ -120,10 +338,13 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	
 	protected void triggerFail(Throwable rejected) {
 		for (FailCallback callback : failCallbacks) {
+			Object previous = enterContext(callback);
 			try {
-				triggerFail(callback, rejected);
+				fireFail(callback, rejected);
 			} catch (Exception e) {
-				log.error("an uncaught exception occured in a FailCallback", e);
+				handleUncaughtCallbackException(callback, e);
+			} finally {
+				exitContext(previous);
 			}
 		}
 		failCallbacks.clear();
@@ -136,9 +357,9 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	protected void triggerProgress(P progress) {
 		for (ProgressCallback<P> callback : progressCallbacks) {
 			try {
-				triggerProgress(callback, progress);
+				fireProgress(callback, progress);
 			} catch (Exception e) {
-				log.error("an uncaught exception occured in a ProgressCallback", e);
+				handleUncaughtCallbackException(callback, e);
 			}
 		}
 	}
@@ -149,13 +370,17 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 	
 	protected void triggerAlways(State state, D resolve, Throwable reject) {
 		for (AlwaysCallback<D> callback : alwaysCallbacks) {
+			Object previous = enterContext(callback);
 			try {
-				triggerAlways(callback, state, resolve, reject);
+				fireAlways(callback, state, resolve, reject);
 			} catch (Exception e) {
-				log.error("an uncaught exception occured in a AlwaysCallback", e);
+				handleUncaughtCallbackException(callback, e);
+			} finally {
+				exitContext(previous);
 			}
 		}
 		alwaysCallbacks.clear();
+		releaseContexts();
 		
 		synchronized (this) {
 			this.notifyAll();
@@ -166,12 +391,149 @@ public abstract class AbstractPromise<D, P> implements Promise<D, P> {
 		callback.onAlways(state, resolve, reject);
 	}
 
+	void captureContext(Object callback) {
+		if (ContextPropagation.getPropagator() == null)
+			return;
+		
+		Object snapshot = ContextPropagation.capture();
+		if (context == NO_CONTEXT) {
+			context = snapshot;
+		} else if (snapshot != context) {
+			if (callbackContexts == null)
+				callbackContexts = new IdentityHashMap<Object, Object>();
+			callbackContexts.put(callback, snapshot);
+		}
+	}
+
+	void releaseContexts() {
+		callbackContexts = null;
+	}
+
+	Object enterContext(Object callback) {
+		Object snapshot = context;
+		if (callbackContexts != null && callbackContexts.containsKey(callback))
+			snapshot = callbackContexts.get(callback);
+		return snapshot == NO_CONTEXT ? NO_CONTEXT : ContextPropagation.restore(snapshot);
+	}
+
+	void exitContext(Object previous) {
+		if (previous != NO_CONTEXT)
+			ContextPropagation.restore(previous);
+	}
+
+	/*
+	 * The fire* methods wrap the corresponding trigger* methods with callback
+	 * lifecycle events, and fall through directly when no listener is installed.
+	 */
+
+	void fireDone(DoneCallback<D> callback, D resolved) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener == null) {
+			triggerDone(callback, resolved);
+			return;
+		}
+		listener.onCallbackStarted(this, callback);
+		Throwable error = null;
+		try {
+			triggerDone(callback, resolved);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			listener.onCallbackFinished(this, callback, error);
+		}
+	}
+
+	void fireFail(FailCallback callback, Throwable rejected) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener == null) {
+			triggerFail(callback, rejected);
+			return;
+		}
+		listener.onCallbackStarted(this, callback);
+		Throwable error = null;
+		try {
+			triggerFail(callback, rejected);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			listener.onCallbackFinished(this, callback, error);
+		}
+	}
+
+	void fireProgress(ProgressCallback<P> callback, P progress) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener == null) {
+			triggerProgress(callback, progress);
+			return;
+		}
+		listener.onCallbackStarted(this, callback);
+		Throwable error = null;
+		try {
+			triggerProgress(callback, progress);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			listener.onCallbackFinished(this, callback, error);
+		}
+	}
+
+	void fireAlways(AlwaysCallback<D> callback, State state, D resolve, Throwable reject) {
+		LifecycleListener listener = lifecycleListener;
+		if (listener == null) {
+			triggerAlways(callback, state, resolve, reject);
+			return;
+		}
+		listener.onCallbackStarted(this, callback);
+		Throwable error = null;
+		try {
+			triggerAlways(callback, state, resolve, reject);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			listener.onCallbackFinished(this, callback, error);
+		}
+	}
+
 	@Override
 	public Promise<D, P> progress(ProgressCallback<P> callback) {
 		progressCallbacks.add(callback);
 		return this;
 	}
 
+	@Override
+	public Promise<D, P> progress(ProgressCallback<P> callback, ProgressStrategy strategy) {
+		return progress(strategy.apply(this, callback));
+	}
+
+	@Override
+	public Publisher<P> progressPublisher() {
+		ProgressPublisher<D, P> publisher = progressPublisher;
+		if (publisher == null) {
+			synchronized (this) {
+				publisher = progressPublisher;
+				if (publisher == null) {
+					publisher = new ProgressPublisher<D, P>(this);
+					progressPublisher = publisher;
+				}
+			}
+		}
+		return publisher;
+	}
+
+	/**
+	 * @see ProgressPublisher#demand()
+	 * @return outstanding demand of the slowest {@link #progressPublisher()} subscriber,
+	 * or {@link Long#MAX_VALUE} if nobody subscribed
+	 */
+	public long progressDemand() {
+		ProgressPublisher<D, P> publisher = progressPublisher;
+		return publisher == null ? Long.MAX_VALUE : publisher.demand();
+	}
+
 	@Override
 	public Promise<D, P> then(DoneCallback<D> callback) {
 		return done(callback);
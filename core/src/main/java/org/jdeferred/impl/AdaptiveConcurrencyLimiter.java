@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.jdeferred.DeferredFutureTask;
+
+/**
+ * Limits the number of tasks in flight, learning the limit from the latency of completed
+ * tasks in the style of TCP Vegas, see
+ * {@link AbstractDeferredManager#setConcurrencyLimiter(AdaptiveConcurrencyLimiter)}.
+ * 
+ * The limiter remembers the lowest latency seen lately as the latency without load, and
+ * estimates how many tasks are queued somewhere as
+ * <code>limit * (1 - minLatency / latency)</code>.  It raises the limit while that estimate
+ * is small and the limit is actually used, and lowers it once latency rises.  The lowest
+ * latency is learnt again every {@link #PROBE_INTERVAL} samples, so the limiter follows
+ * lasting changes of the dependency.
+ * 
+ * Tasks over the limit wait in a queue, without being submitted, and are submitted as
+ * tasks in flight complete.  If {@link #setMaxQueued(int)} is set, tasks that do not fit
+ * in the queue are rejected with a {@link ConcurrencyLimitExceededException}.
+ * 
+ * <pre>
+ * <code>
+ * dm.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(20, 4, 200));
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class AdaptiveConcurrencyLimiter {
+	public static final int PROBE_INTERVAL = 1000;
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private volatile int maxQueued = Integer.MAX_VALUE;
+	
+	// guarded by this
+	private double limit;
+	private int inFlight;
+	private long minLatency;
+	private long samples;
+	private final Queue<DeferredFutureTask<?, ?>> waiting = new ArrayDeque<DeferredFutureTask<?, ?>>();
+	
+	/**
+	 * @param initialLimit limit to start with
+	 * @param minLimit lowest limit
+	 * @param maxLimit highest limit
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+			throw new IllegalArgumentException("limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+	
+	/**
+	 * @param maxQueued maximum number of tasks waiting for the limit, unbounded by default
+	 */
+	public void setMaxQueued(int maxQueued) {
+		if (maxQueued < 0)
+			throw new IllegalArgumentException("maxQueued must not be negative");
+		this.maxQueued = maxQueued;
+	}
+	
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+	
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+	
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	
+	public synchronized int getQueuedCount() {
+		return waiting.size();
+	}
+	
+	/**
+	 * Takes a slot for <code>task</code>, or queues or rejects it if there is none.
+	 * 
+	 * @return <code>true</code> if the task may be submitted now
+	 */
+	boolean tryAcquire(DeferredFutureTask<?, ?> task) {
+		int reachedLimit;
+		synchronized (this) {
+			if (inFlight < (int) limit) {
+				inFlight++;
+				return true;
+			}
+			if (waiting.size() < maxQueued) {
+				waiting.add(task);
+				return false;
+			}
+			reachedLimit = (int) limit;
+		}
+		// rejected outside the lock, since the rejection runs the callbacks of the task
+		task.reject(new ConcurrencyLimitExceededException("concurrency limit of " + reachedLimit + " reached"));
+		return false;
+	}
+	
+	/**
+	 * Gives back the slot of a completed task, and learns from its latency.
+	 * 
+	 * @param latencyNanos time from submission to completion of the task, or a negative
+	 * value if the task never ran, which only gives back the slot
+	 * @return a waiting task that takes over the slot, or <code>null</code>
+	 */
+	synchronized DeferredFutureTask<?, ?> release(long latencyNanos) {
+		if (latencyNanos >= 0)
+			update(Math.max(1, latencyNanos));
+		
+		if (inFlight <= (int) limit) {
+			DeferredFutureTask<?, ?> next = waiting.poll();
+			if (next != null)
+				return next;
+		}
+		inFlight--;
+		return null;
+	}
+	
+	private void update(long latency) {
+		if (samples++ % PROBE_INTERVAL == 0 || latency < minLatency)
+			minLatency = latency;
+		
+		double logLimit = Math.max(1, Math.log10(limit));
+		double queued = limit * (1 - (double) minLatency / latency);
+		if (queued <= 3 * logLimit) {
+			// only grow a limit that is used, otherwise it grows without bounds while idle
+			if (inFlight * 2 >= limit)
+				limit = Math.min(maxLimit, limit + logLimit);
+		} else if (queued >= 6 * logLimit) {
+			limit = Math.max(minLimit, limit - logLimit);
+		}
+	}
+}
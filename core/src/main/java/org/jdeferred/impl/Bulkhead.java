@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+
+/**
+ * Caps the number of tasks in flight per key, e.g., per downstream host or per tenant,
+ * so that one slow dependency cannot take every thread of a shared executor.
+ * 
+ * Tasks over the limit wait in a queue of their key, without being submitted, and are
+ * submitted as tasks of the same key finish.  If {@link #setMaxQueuedPerKey(int)} is set,
+ * tasks that do not fit in the queue are rejected with a {@link BulkheadFullException}.
+ * Keys without running or waiting tasks take no memory.
+ * 
+ * <pre>
+ * <code>
+ * Bulkhead&lt;String&gt; bulkhead = new Bulkhead&lt;String&gt;(dm, 10);
+ * bulkhead.when(url.getHost(), new Callable&lt;Response&gt;() { ... });
+ * </code>
+ * </pre>
+ * 
+ * Tasks must be started by the manager, i.e., use {@link StartPolicy#AUTO}, or
+ * {@link StartPolicy#DEFAULT} with an auto-submitting manager.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <K> Type of the keys
+ */
+public class Bulkhead<K> {
+	private final DeferredManager manager;
+	private final int maxConcurrentPerKey;
+	private volatile int maxQueuedPerKey = Integer.MAX_VALUE;
+	private final ConcurrentMap<K, Lane> lanes = new ConcurrentHashMap<K, Lane>();
+	
+	/**
+	 * @param manager the manager tasks get submitted to
+	 * @param maxConcurrentPerKey maximum number of tasks in flight per key
+	 */
+	public Bulkhead(DeferredManager manager, int maxConcurrentPerKey) {
+		if (manager == null)
+			throw new NullPointerException();
+		if (maxConcurrentPerKey <= 0)
+			throw new IllegalArgumentException("maxConcurrentPerKey must be positive");
+		this.manager = manager;
+		this.maxConcurrentPerKey = maxConcurrentPerKey;
+	}
+	
+	public int getMaxConcurrentPerKey() {
+		return maxConcurrentPerKey;
+	}
+	
+	/**
+	 * @param maxQueuedPerKey maximum number of tasks waiting per key, unbounded by default
+	 */
+	public void setMaxQueuedPerKey(int maxQueuedPerKey) {
+		if (maxQueuedPerKey < 0)
+			throw new IllegalArgumentException("maxQueuedPerKey must not be negative");
+		this.maxQueuedPerKey = maxQueuedPerKey;
+	}
+	
+	public int getMaxQueuedPerKey() {
+		return maxQueuedPerKey;
+	}
+	
+	/**
+	 * Submits <code>task</code> to the manager once fewer than
+	 * {@link #getMaxConcurrentPerKey()} tasks of <code>key</code> are in flight.
+	 */
+	public <D, P> Promise<D, P> when(K key, DeferredFutureTask<D, P> task) {
+		for (;;) {
+			Lane lane = lanes.get(key);
+			if (lane == null) {
+				lane = new Lane(key);
+				Lane existing = lanes.putIfAbsent(key, lane);
+				if (existing != null)
+					lane = existing;
+			}
+			
+			boolean full = false;
+			synchronized (lane) {
+				if (lane.removed)
+					continue;
+				if (lane.running >= maxConcurrentPerKey) {
+					if (lane.waiting.size() >= maxQueuedPerKey) {
+						full = true;
+					} else {
+						lane.waiting.add(task);
+						return task.promise();
+					}
+				} else {
+					lane.running++;
+				}
+			}
+			
+			if (full) {
+				task.reject(new BulkheadFullException("too many tasks waiting for " + key));
+			} else {
+				lane.submit(task);
+			}
+			return task.promise();
+		}
+	}
+	
+	/**
+	 * @see #when(Object, DeferredFutureTask)
+	 */
+	public <D> Promise<D, Void> when(K key, Callable<D> callable) {
+		return when(key, new DeferredFutureTask<D, Void>(callable, StartPolicy.AUTO));
+	}
+	
+	/**
+	 * @return number of tasks of <code>key</code> in flight
+	 */
+	public int getRunningCount(K key) {
+		Lane lane = lanes.get(key);
+		if (lane == null)
+			return 0;
+		synchronized (lane) {
+			return lane.running;
+		}
+	}
+	
+	/**
+	 * @return number of tasks of <code>key</code> waiting to be submitted
+	 */
+	public int getQueuedCount(K key) {
+		Lane lane = lanes.get(key);
+		if (lane == null)
+			return 0;
+		synchronized (lane) {
+			return lane.waiting.size();
+		}
+	}
+	
+	/**
+	 * Tasks of one key.
+	 */
+	private class Lane implements Runnable {
+		private final K key;
+		
+		// guarded by this
+		private final Queue<DeferredFutureTask<?, ?>> waiting = new ArrayDeque<DeferredFutureTask<?, ?>>();
+		private int running;
+		private boolean removed;
+		private int finished;
+		private boolean draining;
+		
+		Lane(K key) {
+			this.key = key;
+		}
+		
+		void submit(DeferredFutureTask<?, ?> task) {
+			task.promise().always(this);
+			manager.when(task);
+		}
+		
+		/**
+		 * Called when one of the tasks finishes.  A task that finishes while being
+		 * submitted, e.g., one rejected by the manager, only counts itself here; the
+		 * thread already draining the lane submits its successor, so a long queue of
+		 * such tasks is drained in a loop rather than by recursion.
+		 */
+		@Override
+		public void run() {
+			synchronized (this) {
+				finished++;
+				if (draining)
+					return;
+				draining = true;
+			}
+			
+			for (;;) {
+				DeferredFutureTask<?, ?> next;
+				synchronized (this) {
+					if (finished == 0) {
+						draining = false;
+						return;
+					}
+					finished--;
+					next = waiting.poll();
+					if (next == null && --running == 0) {
+						removed = true;
+						lanes.remove(key, this);
+					}
+				}
+				if (next != null)
+					submit(next);
+			}
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+
+/**
+ * Fails tasks fast while the work they depend on keeps failing.
+ * 
+ * <ul>
+ * <li>{@link State#CLOSED}: tasks run, and the outcomes of the last <code>windowSize</code>
+ * tasks are kept.  Failures and, if {@link #setSlowCallThreshold(long, TimeUnit)} is set,
+ * slow tasks count as failed.  Once the window is full and the failure rate reaches
+ * <code>failureRateThreshold</code>, the breaker opens.</li>
+ * <li>{@link State#OPEN}: tasks are rejected with a {@link CircuitBreakerOpenException}
+ * right away, without being submitted, until <code>openDuration</code> elapsed.</li>
+ * <li>{@link State#HALF_OPEN}: up to {@link #getHalfOpenTrials()} trial tasks run, further
+ * tasks are rejected.  The breaker closes when all trials succeed, and opens again on the
+ * first failed trial.  Trials still unfinished after <code>openDuration</code>, e.g., tasks
+ * that were never started, give up their slots to new trials.</li>
+ * </ul>
+ * 
+ * Only the outcomes of tasks that ran count, in the state they were admitted in; a task
+ * cancelled or rejected before it ran, or admitted before the breaker last changed its
+ * state, is ignored.
+ * 
+ * A breaker guards either all tasks of a manager, see
+ * {@link AbstractDeferredManager#setCircuitBreaker(CircuitBreaker)}, or the tasks passed to
+ * {@link #when(DeferredManager, DeferredFutureTask)}, e.g., one breaker per dependency.
+ * 
+ * <pre>
+ * <code>
+ * CircuitBreaker breaker = new CircuitBreaker(50, 0.5, 30, TimeUnit.SECONDS);
+ * breaker.setSlowCallThreshold(2, TimeUnit.SECONDS);
+ * breaker.when(dm, new Callable&lt;Quote&gt;() { ... });
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class CircuitBreaker {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+	
+	private final int windowSize;
+	private final double failureRateThreshold;
+	private final long openDurationNanos;
+	private volatile long slowCallNanos;
+	private volatile int halfOpenTrials = 1;
+	
+	private volatile State state = State.CLOSED;
+	private volatile long openedTime;
+	/**
+	 * Incremented on every change of {@link #state}, to tell outcomes of tasks admitted
+	 * in the current state from earlier ones.  Written while holding <code>this</code>.
+	 */
+	private volatile long epoch;
+	
+	// guarded by this
+	private final boolean[] window;
+	private int windowIndex;
+	private int windowCount;
+	private int windowFailures;
+	private int trialsStarted;
+	private int trialsSucceeded;
+	private long halfOpenedTime;
+	
+	/**
+	 * @param windowSize number of recent outcomes the failure rate is computed from
+	 * @param failureRateThreshold failure rate, between 0 and 1, that opens the breaker
+	 * @param openDuration how long the breaker stays open before trying again
+	 */
+	public CircuitBreaker(int windowSize, double failureRateThreshold, long openDuration, TimeUnit unit) {
+		if (windowSize <= 0)
+			throw new IllegalArgumentException("windowSize must be positive");
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1)
+			throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+		
+		this.windowSize = windowSize;
+		this.failureRateThreshold = failureRateThreshold;
+		this.openDurationNanos = unit.toNanos(openDuration);
+		this.window = new boolean[windowSize];
+	}
+	
+	/**
+	 * @param threshold duration from submission to completion above which a successful
+	 * task counts as failed, or 0 to ignore latency
+	 */
+	public void setSlowCallThreshold(long threshold, TimeUnit unit) {
+		this.slowCallNanos = unit.toNanos(threshold);
+	}
+	
+	public long getSlowCallThreshold(TimeUnit unit) {
+		return unit.convert(slowCallNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @param halfOpenTrials number of trial tasks let through while half-open, 1 by default
+	 */
+	public void setHalfOpenTrials(int halfOpenTrials) {
+		if (halfOpenTrials <= 0)
+			throw new IllegalArgumentException("halfOpenTrials must be positive");
+		this.halfOpenTrials = halfOpenTrials;
+	}
+	
+	public int getHalfOpenTrials() {
+		return halfOpenTrials;
+	}
+	
+	public State getState() {
+		return state;
+	}
+	
+	/**
+	 * @return failure rate of the current window, 0 while it is not full
+	 */
+	public synchronized double getFailureRate() {
+		return windowCount < windowSize ? 0 : (double) windowFailures / windowCount;
+	}
+	
+	/**
+	 * Submits <code>task</code> to <code>manager</code> if this breaker lets it through,
+	 * or rejects it with a {@link CircuitBreakerOpenException} otherwise.
+	 */
+	public <D, P> Promise<D, P> when(DeferredManager manager, DeferredFutureTask<D, P> task) {
+		if (!admit(task))
+			return task.promise();
+		return manager.when(task);
+	}
+	
+	/**
+	 * @see #when(DeferredManager, DeferredFutureTask)
+	 */
+	public <D> Promise<D, Void> when(DeferredManager manager, Callable<D> callable) {
+		return when(manager, new DeferredFutureTask<D, Void>(callable, StartPolicy.AUTO));
+	}
+	
+	/**
+	 * Rejects <code>task</code> if this breaker does not let it through, or starts
+	 * watching its outcome.
+	 * 
+	 * @return <code>true</code> if the task may be submitted
+	 */
+	<D> boolean admit(DeferredFutureTask<D, ?> task) {
+		Outcome<D> outcome = new Outcome<D>(task);
+		if (!tryAcquire(outcome)) {
+			task.reject(new CircuitBreakerOpenException("circuit breaker is " + state));
+			return false;
+		}
+		task.promise().always(outcome);
+		return true;
+	}
+	
+	private boolean tryAcquire(Outcome<?> outcome) {
+		long currentEpoch = epoch;
+		State current = state;
+		if (current == State.CLOSED) {
+			outcome.epoch = currentEpoch;
+			return true;
+		}
+		if (current == State.OPEN && System.nanoTime() - openedTime < openDurationNanos)
+			return false;
+		
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (state == State.OPEN) {
+				if (now - openedTime < openDurationNanos)
+					return false;
+				halfOpen(now);
+			} else if (state == State.HALF_OPEN && trialsStarted >= halfOpenTrials
+					&& now - halfOpenedTime >= openDurationNanos) {
+				// trials that never finished, e.g., were never started, must not keep the breaker half-open
+				halfOpen(now);
+			}
+			if (state == State.HALF_OPEN) {
+				if (trialsStarted >= halfOpenTrials)
+					return false;
+				trialsStarted++;
+			}
+			outcome.epoch = epoch;
+			return true;
+		}
+	}
+	
+	private synchronized void record(Outcome<?> outcome, boolean ran, boolean failed) {
+		if (outcome.epoch != epoch)
+			return;
+		
+		switch (state) {
+		case CLOSED:
+			if (!ran)
+				return;
+			if (windowCount == windowSize) {
+				if (window[windowIndex])
+					windowFailures--;
+			} else {
+				windowCount++;
+			}
+			window[windowIndex] = failed;
+			if (failed)
+				windowFailures++;
+			windowIndex = (windowIndex + 1) % windowSize;
+			
+			if (windowCount == windowSize && windowFailures >= failureRateThreshold * windowSize)
+				open();
+			break;
+		case HALF_OPEN:
+			if (!ran)
+				trialsStarted--;
+			else if (failed)
+				open();
+			else if (++trialsSucceeded >= halfOpenTrials)
+				close();
+			break;
+		case OPEN:
+			break;
+		}
+	}
+	
+	private void open() {
+		openedTime = System.nanoTime();
+		epoch++;
+		state = State.OPEN;
+	}
+	
+	private void halfOpen(long now) {
+		trialsStarted = 0;
+		trialsSucceeded = 0;
+		halfOpenedTime = now;
+		epoch++;
+		state = State.HALF_OPEN;
+	}
+	
+	private void close() {
+		windowIndex = 0;
+		windowCount = 0;
+		windowFailures = 0;
+		epoch++;
+		state = State.CLOSED;
+	}
+	
+	/**
+	 * Watches the outcome of one admitted task.
+	 */
+	private final class Outcome<D> implements AlwaysCallback<D> {
+		private final DeferredFutureTask<D, ?> task;
+		private final long submittedTime = System.nanoTime();
+		private long epoch;
+		
+		Outcome(DeferredFutureTask<D, ?> task) {
+			this.task = task;
+		}
+		
+		@Override
+		public void onAlways(Promise.State state, D resolved, Throwable rejected) {
+			long slowCall = slowCallNanos;
+			boolean failed = state != Promise.State.RESOLVED
+					|| (slowCall > 0 && System.nanoTime() - submittedTime > slowCall);
+			record(this, task.isStarted(), failed);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.ContextPropagator;
+
+/**
+ * Holds the {@link ContextPropagator} used by all promises and managers.
+ * 
+ * When installed, a context snapshot is captured when a callback is registered through
+ * {@link AbstractPromise#done(org.jdeferred.DoneCallback)}, {@link AbstractPromise#fail(org.jdeferred.FailCallback)}
+ * or {@link AbstractPromise#always(org.jdeferred.AlwaysCallback)}, and when a task is handed to
+ * {@link AbstractDeferredManager#when(org.jdeferred.DeferredFutureTask)}.  The snapshot is restored
+ * around the callback or task execution.  Without a propagator, nothing is captured.
+ * 
+ * The propagator should be installed once, before promises are created.
+ * 
+ * @author Ray Tsang
+ */
+public final class ContextPropagation {
+	private static volatile ContextPropagator propagator;
+
+	private ContextPropagation() {
+	}
+
+	/**
+	 * @param propagator the propagator, or <code>null</code> to disable context propagation
+	 */
+	public static void setPropagator(ContextPropagator propagator) {
+		ContextPropagation.propagator = propagator;
+	}
+
+	public static ContextPropagator getPropagator() {
+		return propagator;
+	}
+
+	/**
+	 * @return the current snapshot, or <code>null</code> if there is none or propagation is disabled
+	 */
+	public static Object capture() {
+		ContextPropagator propagator = ContextPropagation.propagator;
+		return propagator == null ? null : propagator.capture();
+	}
+
+	/**
+	 * @param snapshot
+	 * @return the previously installed context
+	 * @see ContextPropagator#restore(Object)
+	 */
+	public static Object restore(Object snapshot) {
+		ContextPropagator propagator = ContextPropagation.propagator;
+		return propagator == null ? null : propagator.restore(snapshot);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredFutureTask;
+
+/**
+ * A {@link DefaultDeferredManager} running waiting tasks earliest deadline first, on a
+ * fixed number of threads.  See {@link DeferredFutureTask#setDeadline(long, TimeUnit)}.
+ * 
+ * Tasks without a deadline run after all tasks with one, in submission order.  Tasks
+ * whose deadline passed before they started are not run, their promise is rejected
+ * with a {@link java.util.concurrent.TimeoutException}, so that an overloaded manager
+ * does not spend its threads on work whose callers already gave up.
+ * 
+ * <pre>
+ * <code>
+ * DeadlineDeferredManager dm = new DeadlineDeferredManager(8);
+ * DeferredFutureTask&lt;Page, Void&gt; task = new DeferredFutureTask&lt;Page, Void&gt;(callable);
+ * task.setDeadline(200, TimeUnit.MILLISECONDS);
+ * dm.when(task);
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class DeadlineDeferredManager extends AbstractOrderedDeferredManager {
+	private static final Comparator<OrderedTask> BY_DEADLINE = new Comparator<OrderedTask>() {
+		@Override
+		public int compare(OrderedTask a, OrderedTask b) {
+			boolean aHasDeadline = hasDeadline(a);
+			if (aHasDeadline != hasDeadline(b))
+				return aHasDeadline ? -1 : 1;
+			if (!aHasDeadline)
+				return 0;
+			long diff = deadline(a) - deadline(b);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	};
+	
+	/**
+	 * @param nThreads number of threads running tasks
+	 */
+	public DeadlineDeferredManager(int nThreads) {
+		super(nThreads, BY_DEADLINE);
+	}
+	
+	private static boolean hasDeadline(OrderedTask task) {
+		return task.task instanceof DeferredFutureTask && ((DeferredFutureTask<?, ?>) task.task).hasDeadline();
+	}
+	
+	private static long deadline(OrderedTask task) {
+		return ((DeferredFutureTask<?, ?>) task.task).getDeadline();
+	}
+}
@@ -15,18 +15,36 @@
  */
 package org.jdeferred.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise.State;
+
 /**
  * A default implementation that runs deferred tasks using an {@link ExecutorService}.
  * Also, by default, deferred tasks are executed (submitted to the ExecutorService) automatically
  * when it's passed into {@link DeferredManager}'s when(...) methods.  This behavior can be changed
  * by setting {@link #setAutoSubmit(boolean)}.
  * 
+ * If the ExecutorService rejects a task, e.g., because the queue of a bounded executor
+ * (see {@link #DefaultDeferredManager(int, int)}) is full, the promise of the task is
+ * rejected with an {@link ExecutorOverloadedException}; {@link RejectedExecutionException}
+ * is not thrown to the caller of when(...).
+ * 
  * @author Ray Tsang
  *
  */
@@ -40,8 +58,15 @@ public class DefaultDeferredManager extends AbstractDeferredManager {
 	 */
 	public static final boolean DEFAULT_AUTO_SUBMIT = true;
 	
+	/**
+	 * Idle time after which threads of a bounded executor stop, see {@link #DefaultDeferredManager(int, int)}.
+	 */
+	public static final long DEFAULT_KEEP_ALIVE_SECONDS = 60;
+	
 	private final ExecutorService executorService;
 	private boolean autoSubmit = DEFAULT_AUTO_SUBMIT;
+	private volatile boolean trackInFlightTasks;
+	private final ConcurrentMap<DeferredFutureTask, InFlightTask> inFlightTasks = new ConcurrentHashMap<DeferredFutureTask, InFlightTask>();
 
 	/**
 	 * Equivalent to {@link #DefaultDeferredManager(ExecutorService)} using
@@ -51,6 +76,23 @@ public class DefaultDeferredManager extends AbstractDeferredManager {
 		this.executorService = Executors.newCachedThreadPool();
 	}
 
+	/**
+	 * Uses a bounded {@link ThreadPoolExecutor}: up to <code>maxThreads</code> threads,
+	 * which stop when idle for {@link #DEFAULT_KEEP_ALIVE_SECONDS}, and up to
+	 * <code>queueCapacity</code> waiting tasks.  Tasks beyond that are rejected with an
+	 * {@link ExecutorOverloadedException} instead of growing threads or memory without bounds,
+	 * as {@link Executors#newCachedThreadPool()} does under bursts.
+	 * 
+	 * @param maxThreads maximum number of threads running tasks
+	 * @param queueCapacity maximum number of tasks waiting for a thread
+	 */
+	public DefaultDeferredManager(int maxThreads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+				DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity));
+		executor.allowCoreThreadTimeOut(true);
+		this.executorService = executor;
+	}
+
 	/**
 	 * 
 	 * @param executorService
@@ -63,6 +105,23 @@ public class DefaultDeferredManager extends AbstractDeferredManager {
 		return executorService;
 	}
 
+	/**
+	 * Creates an {@link Executor} that runs tasks one at a time, in order,
+	 * on this manager's {@link ExecutorService}, e.g., to dispatch the callbacks of a chain
+	 * with one hand-off per burst instead of one per callback.  Drains are handed over
+	 * through {@link #execute(Runnable)}, so that subclasses ordering their queue see them too.
+	 * 
+	 * @return a new {@link SerialExecutor} on {@link #getExecutorService()}
+	 */
+	public SerialExecutor newSerialExecutor() {
+		return new SerialExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				DefaultDeferredManager.this.execute(command);
+			}
+		});
+	}
+
 	public boolean awaitTermination(long timeout, TimeUnit unit)
 			throws InterruptedException {
 		return executorService.awaitTermination(timeout, unit);
@@ -86,7 +145,37 @@ public class DefaultDeferredManager extends AbstractDeferredManager {
 
 	@Override
 	protected void submit(Runnable runnable) {
-		executorService.submit(runnable);
+		if (trackInFlightTasks && runnable instanceof DeferredFutureTask) {
+			DeferredFutureTask task = (DeferredFutureTask) runnable;
+			InFlightTask inFlightTask = new InFlightTask(task);
+			inFlightTasks.put(task, inFlightTask);
+			task.promise().always(inFlightTask);
+		}
+		try {
+			execute(runnable);
+		} catch (RejectedExecutionException e) {
+			if (!(runnable instanceof DeferredFutureTask))
+				throw e;
+			((DeferredFutureTask) runnable).reject(rejectionOf(e));
+		}
+	}
+	
+	/**
+	 * @return the rejection of a task the executor refused with <code>e</code>
+	 */
+	RejectedExecutionException rejectionOf(RejectedExecutionException e) {
+		return executorService.isShutdown() ? e : new ExecutorOverloadedException("executor is saturated", e);
+	}
+	
+	/**
+	 * Hands a task to the {@link ExecutorService}.  {@link DeferredFutureTask}s are futures
+	 * already, so they are executed as they are instead of being wrapped by
+	 * {@link ExecutorService#submit(Runnable)}.  Subclasses may override this to order tasks.
+	 * 
+	 * @param runnable the task to run
+	 */
+	protected void execute(Runnable runnable) {
+		executorService.execute(runnable);
 	}
 	
 	@Override
@@ -102,5 +191,79 @@ public class DefaultDeferredManager extends AbstractDeferredManager {
 	public void setAutoSubmit(boolean autoSubmit) {
 		this.autoSubmit = autoSubmit;
 	}
+
+	/**
+	 * Enables or disables the registry of submitted {@link DeferredFutureTask}s that did not
+	 * finish yet, see {@link #getInFlightTasks()}.  Disabled by default.
+	 * 
+	 * @param trackInFlightTasks
+	 */
+	public void setTrackInFlightTasks(boolean trackInFlightTasks) {
+		this.trackInFlightTasks = trackInFlightTasks;
+		if (!trackInFlightTasks)
+			inFlightTasks.clear();
+	}
+
+	public boolean isTrackInFlightTasks() {
+		return trackInFlightTasks;
+	}
+
+	/**
+	 * Lists the tasks submitted while {@link #setTrackInFlightTasks(boolean)} was enabled
+	 * and not finished yet, oldest first.  Tasks that stay in this list for a long time are
+	 * either stuck or were never meant to finish.
+	 * 
+	 * @return a snapshot of the in-flight tasks
+	 */
+	public List<InFlightTask> getInFlightTasks() {
+		List<InFlightTask> tasks = new ArrayList<InFlightTask>(inFlightTasks.values());
+		Collections.sort(tasks, new Comparator<InFlightTask>() {
+			@Override
+			public int compare(InFlightTask o1, InFlightTask o2) {
+				long diff = o1.submittedTime - o2.submittedTime;
+				return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+			}
+		});
+		return tasks;
+	}
+
+	/**
+	 * A task submitted to a {@link DefaultDeferredManager} that did not finish yet.
+	 * 
+	 * @see DefaultDeferredManager#getInFlightTasks()
+	 */
+	public final class InFlightTask implements AlwaysCallback {
+		private final DeferredFutureTask task;
+		private final long submittedTime = System.nanoTime();
+
+		InFlightTask(DeferredFutureTask task) {
+			this.task = task;
+		}
+
+		public DeferredFutureTask getTask() {
+			return task;
+		}
+
+		/**
+		 * @return {@link System#nanoTime()} when the task was submitted
+		 */
+		public long getSubmittedTime() {
+			return submittedTime;
+		}
+
+		public long getAge(TimeUnit unit) {
+			return unit.convert(System.nanoTime() - submittedTime, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public void onAlways(State state, Object resolved, Throwable rejected) {
+			inFlightTasks.remove(task);
+		}
+
+		@Override
+		public String toString() {
+			return "InFlightTask[" + task + ", age=" + getAge(TimeUnit.MILLISECONDS) + "ms]";
+		}
+	}
 	
 }
@@ -18,6 +18,7 @@ package org.jdeferred.impl;
 import org.jdeferred.Deferred;
 import org.jdeferred.DoneCallback;
 import org.jdeferred.FailCallback;
+import org.jdeferred.LifecycleListener;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.Promise;
 
@@ -64,8 +65,13 @@ public class DeferredObject<D, P> extends AbstractPromise<D, P> implements Defer
 				throw new IllegalStateException("Deferred object already finished, cannot resolve again");
 			
 			this.state = State.RESOLVED;
+			untrack();
 			this.resolveResult = resolve;
 			
+			LifecycleListener listener = lifecycleListener;
+			if (listener != null)
+				listener.onPromiseResolved(this, resolve);
+			
 			try {
 				triggerDone(resolve);
 			} finally {
@@ -92,8 +98,13 @@ public class DeferredObject<D, P> extends AbstractPromise<D, P> implements Defer
 			if (!isPending())
 				throw new IllegalStateException("Deferred object already finished, cannot reject again");
 			this.state = State.REJECTED;
+			untrack();
 			this.rejectResult = reject;
 			
+			LifecycleListener listener = lifecycleListener;
+			if (listener != null)
+				listener.onPromiseRejected(this, reject);
+			
 			try {
 				triggerFail(reject);
 			} finally {
@@ -109,6 +120,11 @@ public class DeferredObject<D, P> extends AbstractPromise<D, P> implements Defer
 			if (!isPending())
 				throw new IllegalStateException("Deferred object already finished, cannot cancel again");
 			this.state = State.CANCELLED;
+			untrack();
+			
+			LifecycleListener listener = lifecycleListener;
+			if (listener != null)
+				listener.onPromiseCancelled(this);
 		}
 		return this;
 	}
@@ -26,7 +26,9 @@ import org.jdeferred.FailPipe;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.ProgressFilter;
 import org.jdeferred.ProgressPipe;
+import org.jdeferred.ProgressStrategy;
 import org.jdeferred.Promise;
+import org.jdeferred.flow.Publisher;
 
 public class DeferredPromise<D, P> implements Promise<D, P> {
 	private final Promise<D, P> promise;
@@ -107,6 +109,16 @@ public class DeferredPromise<D, P> implements Promise<D, P> {
 		return promise.progress(callback);
 	}
 
+	@Override
+	public Promise<D, P> progress(ProgressCallback<P> callback, ProgressStrategy strategy) {
+		return promise.progress(callback, strategy);
+	}
+
+	@Override
+	public Publisher<P> progressPublisher() {
+		return promise.progressPublisher();
+	}
+
 	@Override
 	public void waitSafely() throws InterruptedException {
 		promise.waitSafely();
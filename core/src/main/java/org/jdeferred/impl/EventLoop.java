@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single dedicated thread running tasks in the order they were submitted.
+ * 
+ * Tasks are handed to the loop through a lock-free concurrent queue; the loop thread
+ * parks when the queue is empty and is unparked only by the first submission after it went
+ * to sleep.  Submissions from the loop thread itself never wake anybody.
+ * 
+ * State that is only touched from {@link #inEventLoop()} needs neither locks nor
+ * volatile writes, see {@link EventLoopDeferredObject}.
+ * 
+ * A task that throws is logged and does not stop the loop.  After {@link #shutdown()},
+ * the loop runs the tasks already submitted, rejects new ones, and terminates.  Completions
+ * of {@link EventLoopDeferredObject}s are still accepted, and run on the completing thread
+ * once the loop thread stopped.
+ * 
+ * @see EventLoopDeferredManager
+ * @author Ray Tsang
+ */
+public class EventLoop implements Executor {
+	private static final Logger log = LoggerFactory.getLogger(EventLoop.class);
+	
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean sleeping = new AtomicBoolean();
+	private final LoopThread thread;
+	private volatile boolean shutdown;
+	/**
+	 * Set by the loop thread once it took its last task from the queue after {@link #shutdown()}.
+	 */
+	private volatile boolean stopped;
+	
+	public EventLoop(String name) {
+		this.thread = new LoopThread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * @return the loop running the current thread, or <code>null</code> if the current thread is not a loop thread
+	 */
+	public static EventLoop current() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof LoopThread ? ((LoopThread) thread).loop : null;
+	}
+	
+	/**
+	 * @return <code>true</code> if the current thread is the thread of this loop
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+	
+	@Override
+	public void execute(Runnable task) {
+		if (task == null)
+			throw new NullPointerException();
+		if (shutdown)
+			throw new RejectedExecutionException("event loop is shut down");
+		
+		tasks.offer(task);
+		// the loop may have seen an empty queue and terminated just before the offer
+		if (shutdown && tasks.remove(task))
+			throw new RejectedExecutionException("event loop is shut down");
+		if (sleeping.get() && sleeping.compareAndSet(true, false))
+			LockSupport.unpark(thread);
+	}
+	
+	/**
+	 * Like {@link #execute(Runnable)}, but also accepted after {@link #shutdown()}: the task
+	 * still runs on the loop while it drains, and on the calling thread once the loop
+	 * {@link #hasStopped()}.  Used to settle {@link EventLoopDeferredObject}s, which must not
+	 * be left pending.
+	 */
+	void executeOrRun(Runnable task) {
+		if (!stopped) {
+			tasks.offer(task);
+			if (sleeping.get() && sleeping.compareAndSet(true, false))
+				LockSupport.unpark(thread);
+			// either the loop takes the task in its last drain, or it is taken back here
+			if (!stopped || !tasks.remove(task))
+				return;
+		}
+		task.run();
+	}
+	
+	/**
+	 * @return <code>true</code> once the loop thread runs no more tasks submitted from now on
+	 */
+	boolean hasStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Rejects new tasks; tasks already submitted still run.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		LockSupport.unpark(thread);
+	}
+	
+	public boolean isShutdown() {
+		return shutdown;
+	}
+	
+	public boolean isTerminated() {
+		return shutdown && !thread.isAlive();
+	}
+	
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		thread.join(Math.max(1, unit.toMillis(timeout)));
+		return isTerminated();
+	}
+	
+	private void run() {
+		for (;;) {
+			Runnable task = tasks.poll();
+			if (task != null) {
+				runSafely(task);
+				continue;
+			}
+			
+			if (shutdown && tasks.isEmpty()) {
+				stopped = true;
+				// tasks offered before the flag was visible
+				while ((task = tasks.poll()) != null)
+					runSafely(task);
+				return;
+			}
+			
+			// a producer either sees the flag and unparks, or its task is seen here
+			sleeping.set(true);
+			if (tasks.isEmpty() && !shutdown)
+				LockSupport.park(this);
+			sleeping.set(false);
+		}
+	}
+	
+	private static void runSafely(Runnable task) {
+		try {
+			task.run();
+		} catch (Throwable e) {
+			log.error("an uncaught exception occured in a task of an EventLoop", e);
+		}
+	}
+	
+	private static class LoopThread extends Thread {
+		private final EventLoop loop;
+		
+		LoopThread(EventLoop loop, String name) {
+			super(name);
+			this.loop = loop;
+		}
+		
+		@Override
+		public void run() {
+			loop.run();
+		}
+	}
+}
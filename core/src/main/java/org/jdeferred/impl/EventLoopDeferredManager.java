@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+
+/**
+ * A {@link org.jdeferred.DeferredManager} running tasks on a fixed set of single-threaded
+ * {@link EventLoop}s, one per processor by default.
+ * 
+ * Tasks submitted from one of the loops stay on that loop; tasks submitted from any other
+ * thread are spread over the loops in turn.  The promises of {@link #when(Callable)} and
+ * {@link #when(Runnable)}, as well as {@link #deferred()}, are confined to the loop the same
+ * way: they complete and run their callbacks on that loop without locks or volatile writes,
+ * see {@link EventLoopDeferredObject}.  Tasks with their own deferred, e.g.,
+ * {@link org.jdeferred.DeferredCallable}s, still complete a {@link org.jdeferred.impl.DeferredObject}.
+ * 
+ * <pre>
+ * <code>
+ * EventLoopDeferredManager dm = new EventLoopDeferredManager();
+ * dm.when(new Callable&lt;Response&gt;() { ... })
+ *   .done(new DoneCallback&lt;Response&gt;() {
+ *     // runs on the same loop
+ *   });
+ * </code>
+ * </pre>
+ * 
+ * After {@link #shutdown()}, the promises of new tasks are rejected with a
+ * {@link RejectedExecutionException}.
+ * 
+ * @author Ray Tsang
+ */
+public class EventLoopDeferredManager extends AbstractDeferredManager {
+	private static final AtomicInteger managerNumber = new AtomicInteger();
+	
+	private final EventLoop[] loops;
+	private final AtomicInteger nextLoop = new AtomicInteger();
+	
+	public EventLoopDeferredManager() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param nLoops the number of loops, and thus threads
+	 */
+	public EventLoopDeferredManager(int nLoops) {
+		if (nLoops <= 0)
+			throw new IllegalArgumentException("nLoops must be positive");
+		
+		int number = managerNumber.incrementAndGet();
+		this.loops = new EventLoop[nLoops];
+		for (int i = 0; i < nLoops; i++)
+			loops[i] = new EventLoop("jdeferred-loop-" + number + "-" + i);
+	}
+	
+	public int getEventLoopCount() {
+		return loops.length;
+	}
+	
+	/**
+	 * @return the current loop if called on one of this manager's loops, otherwise the next loop in turn
+	 */
+	public EventLoop next() {
+		EventLoop current = EventLoop.current();
+		if (current != null) {
+			for (EventLoop loop : loops) {
+				if (loop == current)
+					return current;
+			}
+		}
+		return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+	
+	/**
+	 * @return a new pending deferred confined to {@link #next()}
+	 */
+	public <D, P> EventLoopDeferredObject<D, P> deferred() {
+		return new EventLoopDeferredObject<D, P>(next());
+	}
+	
+	@Override
+	public <D> Promise<D, Void> when(Callable<D> callable) {
+		return when(new DeferredFutureTask<D, Void>(callable, this.<D, Void>deferred(), StartPolicy.DEFAULT));
+	}
+	
+	@Override
+	public Promise<Void, Void> when(Runnable runnable) {
+		return when(new DeferredFutureTask<Void, Void>(runnable, this.<Void, Void>deferred(), StartPolicy.DEFAULT));
+	}
+	
+	public void shutdown() {
+		for (EventLoop loop : loops)
+			loop.shutdown();
+	}
+	
+	public boolean isShutdown() {
+		return loops[0].isShutdown();
+	}
+	
+	public boolean isTerminated() {
+		for (EventLoop loop : loops) {
+			if (!loop.isTerminated())
+				return false;
+		}
+		return true;
+	}
+	
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (EventLoop loop : loops) {
+			if (!loop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	protected void submit(Runnable runnable) {
+		try {
+			loopOf(runnable).execute(runnable);
+		} catch (RejectedExecutionException e) {
+			if (!(runnable instanceof DeferredFutureTask))
+				throw e;
+			((DeferredFutureTask<?, ?>) runnable).reject(e);
+		}
+	}
+	
+	/**
+	 * @return the loop a task's promise is confined to, so that it completes without a hop,
+	 * otherwise {@link #next()}
+	 */
+	private EventLoop loopOf(Runnable runnable) {
+		if (runnable instanceof DeferredFutureTask) {
+			Promise<?, ?> promise = ((DeferredFutureTask<?, ?>) runnable).promise();
+			if (promise instanceof EventLoopDeferredObject)
+				return ((EventLoopDeferredObject<?, ?>) promise).getEventLoop();
+		}
+		return next();
+	}
+	
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	protected void submit(Callable callable) {
+		next().execute(new FutureTask<Object>(callable));
+	}
+	
+	@Override
+	public boolean isAutoSubmit() {
+		return true;
+	}
+}
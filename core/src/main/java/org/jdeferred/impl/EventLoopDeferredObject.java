@@ -0,0 +1,442 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.LifecycleListener;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+
+/**
+ * A {@link Deferred} confined to an {@link EventLoop}.
+ * 
+ * State and callbacks are only ever touched by the loop thread, so, unlike {@link DeferredObject},
+ * none of the operations take a lock, callbacks are kept in plain lists allocated on first
+ * use, and the state is published with an ordered store instead of a volatile write.  The
+ * shared state and callback lists of {@link AbstractPromise} are left uninitialized.  Only
+ * opt-in features, i.e., a {@link LifecycleListener}, an
+ * {@link org.jdeferred.UncaughtCallbackExceptionHandler} per promise or
+ * {@link PromiseLeakDetector} sampling, still write volatile fields.
+ * 
+ * Calls made on another thread, e.g., a completion arriving from a different loop, are handed
+ * to the loop through its concurrent queue and take effect asynchronously; in particular,
+ * resolving such a deferred twice from another thread is only reported by the loop.  Once the
+ * loop has stopped after {@link EventLoop#shutdown()}, calls run on the calling thread.
+ * 
+ * Callbacks always run on the loop thread.  {@link #waitSafely()} may only block a thread
+ * other than the loop thread.
+ * 
+ * <pre>
+ * <code>
+ * EventLoopDeferredObject&lt;String, Void&gt; deferred = eventLoopDeferredManager.deferred();
+ * deferred.done(new DoneCallback&lt;String&gt;() { ... });
+ * </code>
+ * </pre>
+ * 
+ * @see EventLoopDeferredManager#deferred()
+ * @author Ray Tsang
+ */
+public class EventLoopDeferredObject<D, P> extends AbstractPromise<D, P> implements Deferred<D, P> {
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<EventLoopDeferredObject, State> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(EventLoopDeferredObject.class, State.class, "loopState");
+	
+	private final EventLoop loop;
+	
+	/**
+	 * Only written by the loop thread, with {@link AtomicReferenceFieldUpdater#lazySet(Object, Object)};
+	 * <code>null</code> while pending.
+	 */
+	private volatile State loopState;
+	
+	/*
+	 * Confined to the loop thread, and only allocated once a callback is registered.
+	 */
+	private List<DoneCallback<D>> loopDoneCallbacks;
+	private List<FailCallback> loopFailCallbacks;
+	private List<ProgressCallback<P>> loopProgressCallbacks;
+	private List<AlwaysCallback<D>> loopAlwaysCallbacks;
+	private List<CountDownLatch> waiters;
+	
+	public EventLoopDeferredObject(EventLoop loop) {
+		super(false);
+		if (loop == null)
+			throw new NullPointerException("loop");
+		this.loop = loop;
+	}
+	
+	public EventLoop getEventLoop() {
+		return loop;
+	}
+	
+	@Override
+	public State state() {
+		State state = loopState;
+		return state == null ? State.PENDING : state;
+	}
+	
+	@Override
+	public boolean isPending() {
+		return loopState == null;
+	}
+	
+	@Override
+	public boolean isResolved() {
+		return loopState == State.RESOLVED;
+	}
+	
+	@Override
+	public boolean isRejected() {
+		return loopState == State.REJECTED;
+	}
+	
+	@Override
+	public boolean isCancelled() {
+		return loopState == State.CANCELLED;
+	}
+	
+	@Override
+	public Deferred<D, P> resolve(final D resolve) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					resolve(resolve);
+				}
+			});
+			return this;
+		}
+		
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot resolve again");
+		
+		this.resolveResult = resolve;
+		STATE.lazySet(this, State.RESOLVED);
+		untrack();
+		
+		LifecycleListener listener = lifecycleListener;
+		if (listener != null)
+			listener.onPromiseResolved(this, resolve);
+		
+		try {
+			List<DoneCallback<D>> callbacks = loopDoneCallbacks;
+			if (callbacks != null) {
+				for (int i = 0; i < callbacks.size(); i++) {
+					DoneCallback<D> callback = callbacks.get(i);
+					Object previous = enterContext(callback);
+					try {
+						fireDone(callback, resolve);
+					} catch (Exception e) {
+						handleUncaughtCallbackException(callback, e);
+					} finally {
+						exitContext(previous);
+					}
+				}
+			}
+		} finally {
+			finish(State.RESOLVED, resolve, null);
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> reject(final Throwable reject) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					reject(reject);
+				}
+			});
+			return this;
+		}
+		
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot reject again");
+		
+		this.rejectResult = reject;
+		STATE.lazySet(this, State.REJECTED);
+		untrack();
+		
+		LifecycleListener listener = lifecycleListener;
+		if (listener != null)
+			listener.onPromiseRejected(this, reject);
+		
+		try {
+			List<FailCallback> callbacks = loopFailCallbacks;
+			if (callbacks != null) {
+				for (int i = 0; i < callbacks.size(); i++) {
+					FailCallback callback = callbacks.get(i);
+					Object previous = enterContext(callback);
+					try {
+						fireFail(callback, reject);
+					} catch (Exception e) {
+						handleUncaughtCallbackException(callback, e);
+					} finally {
+						exitContext(previous);
+					}
+				}
+			}
+		} finally {
+			finish(State.REJECTED, null, reject);
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> notify(final P progress) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					EventLoopDeferredObject.this.notify(progress);
+				}
+			});
+			return this;
+		}
+		
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+		
+		List<ProgressCallback<P>> callbacks = loopProgressCallbacks;
+		if (callbacks != null) {
+			for (int i = 0; i < callbacks.size(); i++) {
+				ProgressCallback<P> callback = callbacks.get(i);
+				try {
+					fireProgress(callback, progress);
+				} catch (Exception e) {
+					handleUncaughtCallbackException(callback, e);
+				}
+			}
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> cancel() {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					cancel();
+				}
+			});
+			return this;
+		}
+		
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot cancel again");
+		
+		STATE.lazySet(this, State.CANCELLED);
+		untrack();
+		
+		LifecycleListener listener = lifecycleListener;
+		if (listener != null)
+			listener.onPromiseCancelled(this);
+		
+		clear();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> promise() {
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> done(final DoneCallback<D> callback) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					done(callback);
+				}
+			});
+			return this;
+		}
+		
+		if (isResolved()) {
+			fireDone(callback, resolveResult);
+		} else if (isPending()) {
+			captureContext(callback);
+			if (loopDoneCallbacks == null)
+				loopDoneCallbacks = new ArrayList<DoneCallback<D>>(2);
+			loopDoneCallbacks.add(callback);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> fail(final FailCallback callback) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					fail(callback);
+				}
+			});
+			return this;
+		}
+		
+		if (isRejected()) {
+			fireFail(callback, rejectResult);
+		} else if (isPending()) {
+			captureContext(callback);
+			if (loopFailCallbacks == null)
+				loopFailCallbacks = new ArrayList<FailCallback>(2);
+			loopFailCallbacks.add(callback);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> always(final AlwaysCallback<D> callback) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					always(callback);
+				}
+			});
+			return this;
+		}
+		
+		if (isPending()) {
+			captureContext(callback);
+			if (loopAlwaysCallbacks == null)
+				loopAlwaysCallbacks = new ArrayList<AlwaysCallback<D>>(2);
+			loopAlwaysCallbacks.add(callback);
+		} else {
+			fireAlways(callback, state(), resolveResult, rejectResult);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> progress(final ProgressCallback<P> callback) {
+		if (!confined()) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					progress(callback);
+				}
+			});
+			return this;
+		}
+		
+		if (isPending()) {
+			if (loopProgressCallbacks == null)
+				loopProgressCallbacks = new ArrayList<ProgressCallback<P>>(2);
+			loopProgressCallbacks.add(callback);
+		}
+		return this;
+	}
+	
+	/**
+	 * Blocks the calling thread until this promise is no longer pending.
+	 * 
+	 * @throws IllegalStateException if called on the loop thread while pending, which would never return
+	 */
+	@Override
+	public void waitSafely(long timeout) throws InterruptedException {
+		if (!isPending())
+			return;
+		if (loop.inEventLoop())
+			throw new IllegalStateException("Cannot wait for a pending promise on its own event loop");
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		loop.executeOrRun(new Runnable() {
+			@Override
+			public void run() {
+				if (isPending()) {
+					if (waiters == null)
+						waiters = new ArrayList<CountDownLatch>(1);
+					waiters.add(latch);
+				} else {
+					latch.countDown();
+				}
+			}
+		});
+		
+		if (timeout <= 0) {
+			latch.await();
+		} else if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+			loop.executeOrRun(new Runnable() {
+				@Override
+				public void run() {
+					if (waiters != null)
+						waiters.remove(latch);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if the state and callbacks may be touched by the current thread,
+	 * i.e., it is the loop thread, or the loop thread stopped
+	 */
+	private boolean confined() {
+		return loop.inEventLoop() || loop.hasStopped();
+	}
+	
+	private void finish(State state, D resolve, Throwable reject) {
+		try {
+			List<AlwaysCallback<D>> callbacks = loopAlwaysCallbacks;
+			if (callbacks != null) {
+				for (int i = 0; i < callbacks.size(); i++) {
+					AlwaysCallback<D> callback = callbacks.get(i);
+					Object previous = enterContext(callback);
+					try {
+						fireAlways(callback, state, resolve, reject);
+					} catch (Exception e) {
+						handleUncaughtCallbackException(callback, e);
+					} finally {
+						exitContext(previous);
+					}
+				}
+			}
+		} finally {
+			clear();
+		}
+	}
+	
+	/**
+	 * Drops the callbacks of a finished promise and releases the threads waiting for it.
+	 */
+	private void clear() {
+		loopDoneCallbacks = null;
+		loopFailCallbacks = null;
+		loopProgressCallbacks = null;
+		loopAlwaysCallbacks = null;
+		releaseContexts();
+		
+		List<CountDownLatch> latches = waiters;
+		if (latches != null) {
+			waiters = null;
+			for (int i = 0; i < latches.size(); i++)
+				latches.get(i).countDown();
+		}
+	}
+}
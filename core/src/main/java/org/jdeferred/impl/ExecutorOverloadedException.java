@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Rejection of tasks the executor of a {@link DefaultDeferredManager} refused because it
+ * is saturated, e.g., because the queue of a bounded executor is full.
+ * 
+ * @author Ray Tsang
+ */
+public class ExecutorOverloadedException extends RejectedExecutionException {
+	private static final long serialVersionUID = 1L;
+
+	public ExecutorOverloadedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
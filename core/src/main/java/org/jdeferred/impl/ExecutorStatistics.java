@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.DeferredFutureTask;
+
+/**
+ * Live gauges of the tasks a manager hands to its executor, see
+ * {@link AbstractDeferredManager#setCollectStatistics(boolean)}.
+ * 
+ * Tasks report to these statistics themselves, from the timestamps they record when
+ * they are queued, started and finished, so tasks are not wrapped to be measured.
+ * Gauges are read one at a time and may be slightly out of step with each other.
+ * 
+ * <pre>
+ * <code>
+ * dm.setCollectStatistics(true);
+ * ...
+ * ExecutorStatistics stats = dm.getStatistics();
+ * log.info("queued={} active={} avgQueueTime={}ms", stats.getQueuedCount(),
+ *     stats.getActiveCount(), stats.getAverageQueueTime(TimeUnit.MILLISECONDS));
+ * </code>
+ * </pre>
+ * 
+ * @see DeferredFutureTask#setStatistics(ExecutorStatistics)
+ * @author Ray Tsang
+ */
+public final class ExecutorStatistics {
+	private final AtomicLong queuedCount = new AtomicLong();
+	private final AtomicLong activeCount = new AtomicLong();
+	private final AtomicLong startedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong totalQueueTime = new AtomicLong();
+	private final AtomicLong totalRunTime = new AtomicLong();
+	
+	/**
+	 * Called by {@link DeferredFutureTask#queued()}.
+	 */
+	public void taskQueued() {
+		queuedCount.incrementAndGet();
+	}
+	
+	/**
+	 * Called by {@link DeferredFutureTask#run()} right before the task's code, i.e., never
+	 * for a task cancelled or rejected while queued.
+	 */
+	public void taskStarted(long queuedTime, long startedTime) {
+		if (queuedTime == 0)
+			return;
+		queuedCount.decrementAndGet();
+		activeCount.incrementAndGet();
+		startedCount.incrementAndGet();
+		totalQueueTime.addAndGet(startedTime - queuedTime);
+	}
+	
+	/**
+	 * Called when a {@link DeferredFutureTask} is done, whether it ran or not.
+	 */
+	public void taskFinished(long queuedTime, long startedTime, long finishedTime) {
+		if (queuedTime == 0)
+			return;
+		if (startedTime == 0) {
+			// cancelled or rejected while queued
+			queuedCount.decrementAndGet();
+			droppedCount.incrementAndGet();
+			return;
+		}
+		activeCount.decrementAndGet();
+		completedCount.incrementAndGet();
+		totalRunTime.addAndGet(finishedTime - startedTime);
+	}
+	
+	/**
+	 * @return number of tasks handed to the executor that did not start yet
+	 */
+	public long getQueuedCount() {
+		return queuedCount.get();
+	}
+	
+	/**
+	 * @return number of tasks running
+	 */
+	public long getActiveCount() {
+		return activeCount.get();
+	}
+	
+	/**
+	 * @return number of tasks that ran to completion, successfully or not
+	 */
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+	
+	/**
+	 * @return number of queued tasks that finished without running, e.g., past their deadline
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * @return time started tasks spent between being queued and starting, in total
+	 */
+	public long getTotalQueueTime(TimeUnit unit) {
+		return unit.convert(totalQueueTime.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @return time completed tasks spent running, in total
+	 */
+	public long getTotalRunTime(TimeUnit unit) {
+		return unit.convert(totalRunTime.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	public long getAverageQueueTime(TimeUnit unit) {
+		long started = startedCount.get();
+		return started == 0 ? 0 : unit.convert(totalQueueTime.get() / started, TimeUnit.NANOSECONDS);
+	}
+	
+	public long getAverageRunTime(TimeUnit unit) {
+		long completed = completedCount.get();
+		return completed == 0 ? 0 : unit.convert(totalRunTime.get() / completed, TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public String toString() {
+		return "ExecutorStatistics[queued=" + getQueuedCount() + ", active=" + getActiveCount()
+				+ ", completed=" + getCompletedCount() + ", dropped=" + getDroppedCount()
+				+ ", avgQueueTime=" + getAverageQueueTime(TimeUnit.MICROSECONDS) + "us"
+				+ ", avgRunTime=" + getAverageRunTime(TimeUnit.MICROSECONDS) + "us]";
+	}
+}
@@ -15,9 +15,9 @@
  */
 package org.jdeferred.impl;
 
-import org.jdeferred.DoneCallback;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
 import org.jdeferred.DoneFilter;
-import org.jdeferred.FailCallback;
 import org.jdeferred.FailFilter;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.ProgressFilter;
@@ -34,45 +34,103 @@ public class FilteredPromise<D, P, D_OUT, P_OUT> extends DeferredObject<D_OUT, P
 	private final DoneFilter<D, D_OUT> doneFilter;
 	private final FailFilter failFilter;
 	private final ProgressFilter<P, P_OUT> progressFilter;
+	private final Promise<D, P> upstream;
+	private final Listener listener;
+	
+	/**
+	 * Whether {@link #listener} receives the progress of {@link #upstream}, guarded by <code>this</code>.
+	 */
+	private boolean progressWired;
 	
 	public FilteredPromise(final Promise<D, P> promise, final DoneFilter<D, D_OUT> doneFilter, final FailFilter failFilter, final ProgressFilter<P, P_OUT> progressFilter) {
+		if (promise instanceof AbstractPromise)
+			inheritFrom((AbstractPromise<?, ?>) promise);
+		
 		this.doneFilter = doneFilter == null ? NO_OP_DONE_FILTER : doneFilter;
 		this.failFilter = failFilter == null ? NO_OP_FAIL_FILTER : failFilter;
 		this.progressFilter = progressFilter == null ? NO_OP_PROGRESS_FILTER : progressFilter;
 		
-		promise.done(new DoneCallback<D>() {
-
-			@Override
-			public void onDone(D result) {
+		this.upstream = promise;
+		this.listener = new Listener();
+		promise.always(listener);
+		// a custom progress filter may settle this promise, so it must see every progress
+		if (progressFilter != null)
+			wireProgress();
+	}
+	
+	/**
+	 * Subscribes to the progress of the upstream promise once the first progress callback
+	 * is registered, so that a chain nobody observes the progress of does not forward it.
+	 */
+	@Override
+	public Promise<D_OUT, P_OUT> progress(ProgressCallback<P_OUT> callback) {
+		super.progress(callback);
+		wireProgress();
+		return this;
+	}
+	
+	private void wireProgress() {
+		synchronized (this) {
+			if (progressWired || !isPending())
+				return;
+			progressWired = true;
+		}
+		upstream.progress(listener);
+	}
+	
+	@Override
+	public Deferred<D_OUT, P_OUT> cancel() {
+		super.cancel();
+		unwireProgress();
+		return this;
+	}
+	
+	/**
+	 * Stops forwarding progress once this promise finished, since nobody can consume it anymore.
+	 * Callbacks can only be removed from an {@link AbstractPromise}; any other upstream keeps
+	 * calling the listener, which then ignores the progress.
+	 */
+	private void unwireProgress() {
+		if (upstream instanceof AbstractPromise)
+			((AbstractPromise<D, P>) upstream).progressCallbacks.remove(listener);
+	}
+	
+	/**
+	 * Receives every outcome of the upstream promise, so that a stage registers one
+	 * callback object instead of one per outcome.
+	 */
+	private final class Listener implements AlwaysCallback<D>, ProgressCallback<P> {
+		@Override
+		public void onAlways(State state, D resolved, Throwable rejected) {
+			if (state == State.RESOLVED) {
 				try {
-					FilteredPromise.this.resolve(FilteredPromise.this.doneFilter.filterDone(result));
+					FilteredPromise.this.resolve(doneFilter.filterDone(resolved));
 				} catch (CancellationException ignored) {
 					FilteredPromise.this.cancel();
 				} catch (Exception e) {
 					FilteredPromise.this.reject(e);
 				}
-			}
-		}).fail(new FailCallback() {
-
-			@Override
-			public void onFail(Throwable result) {
+			} else if (state == State.REJECTED) {
 				try {
-					FilteredPromise.this.reject(FilteredPromise.this.failFilter.filterFail(result));
+					FilteredPromise.this.reject(failFilter.filterFail(rejected));
 				} catch (CancellationException e) {
 					FilteredPromise.this.cancel();
 				}
 			}
-		}).progress(new ProgressCallback<P>() {
-
-			@Override
-			public void onProgress(P progress) {
-				try {
-					FilteredPromise.this.notify(FilteredPromise.this.progressFilter.filterProgress(progress));
-				} catch (CancellationException e) {
-					FilteredPromise.this.cancel();
-				}
+		}
+		
+		@Override
+		public void onProgress(P progress) {
+			if (!isPending()) {
+				unwireProgress();
+				return;
+			}
+			try {
+				FilteredPromise.this.notify(progressFilter.filterProgress(progress));
+			} catch (CancellationException e) {
+				FilteredPromise.this.cancel();
 			}
-		});
+		}
 	}
 	
 	public static final class NoOpDoneFilter<D> implements DoneFilter<D, D> {
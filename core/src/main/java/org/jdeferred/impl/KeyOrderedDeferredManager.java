@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+
+/**
+ * A {@link DefaultDeferredManager} running tasks of the same ordering key one at a time,
+ * in the order they are handed to the executor, while tasks of different keys run in
+ * parallel on the shared {@link ExecutorService}.  See
+ * {@link DeferredFutureTask#setOrderingKey(Object)}; tasks without a key are not ordered.
+ * 
+ * Each key with pending tasks has a queue, drained by a single executor task that runs
+ * up to {@link #DRAIN_BATCH_SIZE} tasks before yielding its thread to other keys.  Keys
+ * without pending tasks take no memory, and no thread is dedicated to a key.
+ * 
+ * <pre>
+ * <code>
+ * KeyOrderedDeferredManager dm = new KeyOrderedDeferredManager(executor);
+ * dm.whenOrdered(event.getAccountId(), new Callable&lt;Balance&gt;() { ... });
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class KeyOrderedDeferredManager extends DefaultDeferredManager {
+	public static final int DRAIN_BATCH_SIZE = 64;
+	
+	private final ConcurrentMap<Object, KeyQueue> queues = new ConcurrentHashMap<Object, KeyQueue>();
+	
+	/**
+	 * @see DefaultDeferredManager#DefaultDeferredManager()
+	 */
+	public KeyOrderedDeferredManager() {
+		super();
+	}
+	
+	/**
+	 * @see DefaultDeferredManager#DefaultDeferredManager(int, int)
+	 */
+	public KeyOrderedDeferredManager(int maxThreads, int queueCapacity) {
+		super(maxThreads, queueCapacity);
+	}
+	
+	public KeyOrderedDeferredManager(ExecutorService executorService) {
+		super(executorService);
+	}
+	
+	/**
+	 * Runs <code>callable</code> after the tasks submitted earlier with the same key.
+	 * The task is always started, regardless of {@link StartPolicy}.
+	 */
+	public <D> Promise<D, Void> whenOrdered(Object key, Callable<D> callable) {
+		DeferredFutureTask<D, Void> task = new DeferredFutureTask<D, Void>(callable, StartPolicy.AUTO);
+		task.setOrderingKey(key);
+		return when(task);
+	}
+	
+	@Override
+	protected void execute(Runnable runnable) {
+		Object key = runnable instanceof DeferredFutureTask ? ((DeferredFutureTask<?, ?>) runnable).getOrderingKey() : null;
+		if (key == null) {
+			super.execute(runnable);
+			return;
+		}
+		
+		for (;;) {
+			KeyQueue queue = queues.get(key);
+			if (queue == null) {
+				queue = new KeyQueue(key);
+				KeyQueue existing = queues.putIfAbsent(key, queue);
+				if (existing != null)
+					queue = existing;
+			}
+			
+			synchronized (queue) {
+				if (queue.removed)
+					continue;
+				queue.tasks.add(runnable);
+				if (queue.scheduled)
+					return;
+				queue.scheduled = true;
+			}
+			
+			try {
+				super.execute(queue);
+			} catch (RejectedExecutionException e) {
+				queue.abandon(runnable, e);
+				throw e;
+			}
+			return;
+		}
+	}
+	
+	/**
+	 * @return number of keys with pending or running tasks
+	 */
+	public int getActiveKeyCount() {
+		return queues.size();
+	}
+	
+	/**
+	 * Pending tasks of one key.  Scheduled on the executor whenever it has tasks and is
+	 * not scheduled already; removed from the map once drained.
+	 */
+	private class KeyQueue implements Runnable {
+		private final Object key;
+		
+		// guarded by this
+		private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+		private boolean scheduled;
+		private boolean removed;
+		
+		KeyQueue(Object key) {
+			this.key = key;
+		}
+		
+		@Override
+		public void run() {
+			for (;;) {
+				for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+					Runnable task;
+					synchronized (this) {
+						task = tasks.poll();
+						if (task == null) {
+							scheduled = false;
+							removed = true;
+							queues.remove(key, this);
+							return;
+						}
+					}
+					task.run();
+				}
+				
+				try {
+					KeyOrderedDeferredManager.super.execute(this);
+					return;
+				} catch (RejectedExecutionException e) {
+					// keep draining on this thread rather than strand the tasks
+				}
+			}
+		}
+		
+		/**
+		 * Rejects the tasks stranded by the executor refusing this queue, except
+		 * <code>rejected</code> itself, which the caller rejects.
+		 */
+		void abandon(Runnable rejected, RejectedExecutionException e) {
+			RejectedExecutionException rejection = rejectionOf(e);
+			Runnable[] stranded;
+			synchronized (this) {
+				stranded = tasks.toArray(new Runnable[tasks.size()]);
+				tasks.clear();
+				scheduled = false;
+				removed = true;
+				queues.remove(key, this);
+			}
+			for (Runnable task : stranded) {
+				if (task != rejected && task instanceof DeferredFutureTask)
+					((DeferredFutureTask<?, ?>) task).reject(rejection);
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.DonePipe;
+import org.jdeferred.FailCallback;
+import org.jdeferred.FailFilter;
+import org.jdeferred.FailPipe;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.ProgressFilter;
+import org.jdeferred.ProgressPipe;
+import org.jdeferred.ProgressStrategy;
+import org.jdeferred.Promise;
+import org.jdeferred.flow.Publisher;
+
+/**
+ * The promise of a {@link StartPolicy#LAZY} task, which starts the task the first time it
+ * is observed: when a callback, filter or pipe is registered, when its progress is
+ * published, or when somebody waits for it.  Querying the state does not start the task.
+ * 
+ * @see AbstractDeferredManager#when(DeferredFutureTask)
+ * @author Ray Tsang
+ */
+class LazyPromise<D, P> implements Promise<D, P> {
+	private final AbstractDeferredManager manager;
+	private final Promise<D, P> promise;
+	
+	/**
+	 * The task until it is started.
+	 */
+	private final AtomicReference<DeferredFutureTask<D, P>> task;
+	
+	LazyPromise(AbstractDeferredManager manager, DeferredFutureTask<D, P> task) {
+		this.manager = manager;
+		this.promise = task.promise();
+		this.task = new AtomicReference<DeferredFutureTask<D, P>>(task);
+	}
+	
+	/**
+	 * @return <code>true</code> once the task was handed to the manager
+	 */
+	boolean isStarted() {
+		return task.get() == null;
+	}
+	
+	private Promise<D, P> start() {
+		if (task.get() != null) {
+			DeferredFutureTask<D, P> pending = task.getAndSet(null);
+			if (pending != null)
+				manager.start(pending);
+		}
+		return promise;
+	}
+	
+	@Override
+	public State state() {
+		return promise.state();
+	}
+	
+	@Override
+	public boolean isPending() {
+		return promise.isPending();
+	}
+	
+	@Override
+	public boolean isResolved() {
+		return promise.isResolved();
+	}
+	
+	@Override
+	public boolean isRejected() {
+		return promise.isRejected();
+	}
+	
+	@Override
+	public boolean isCancelled() {
+		return promise.isCancelled();
+	}
+	
+	@Override
+	public Promise<D, P> then(DoneCallback<D> doneCallback) {
+		return done(doneCallback);
+	}
+	
+	@Override
+	public Promise<D, P> then(DoneCallback<D> doneCallback, FailCallback failCallback) {
+		promise.then(doneCallback, failCallback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> then(DoneCallback<D> doneCallback, FailCallback failCallback, ProgressCallback<P> progressCallback) {
+		promise.then(doneCallback, failCallback, progressCallback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter) {
+		return start().then(doneFilter);
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter failFilter) {
+		return start().then(doneFilter, failFilter);
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter failFilter, ProgressFilter<P, P_OUT> progressFilter) {
+		return start().then(doneFilter, failFilter, progressFilter);
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DonePipe<D, D_OUT, P_OUT> donePipe) {
+		return start().then(donePipe);
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DonePipe<D, D_OUT, P_OUT> donePipe, FailPipe<D_OUT, P_OUT> failPipe) {
+		return start().then(donePipe, failPipe);
+	}
+	
+	@Override
+	public <D_OUT, P_OUT> Promise<D_OUT, P_OUT> then(DonePipe<D, D_OUT, P_OUT> donePipe, FailPipe<D_OUT, P_OUT> failPipe, ProgressPipe<P, D_OUT, P_OUT> progressPipe) {
+		return start().then(donePipe, failPipe, progressPipe);
+	}
+	
+	@Override
+	public Promise<D, P> done(DoneCallback<D> callback) {
+		promise.done(callback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> fail(FailCallback callback) {
+		promise.fail(callback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> always(AlwaysCallback<D> callback) {
+		promise.always(callback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> always(Runnable runnable) {
+		promise.always(runnable);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> progress(ProgressCallback<P> callback) {
+		promise.progress(callback);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> progress(ProgressCallback<P> callback, ProgressStrategy strategy) {
+		promise.progress(callback, strategy);
+		start();
+		return this;
+	}
+	
+	@Override
+	public Publisher<P> progressPublisher() {
+		return start().progressPublisher();
+	}
+	
+	@Override
+	public void waitSafely() throws InterruptedException {
+		start().waitSafely();
+	}
+	
+	@Override
+	public void waitSafely(long timeout) throws InterruptedException {
+		start().waitSafely(timeout);
+	}
+}
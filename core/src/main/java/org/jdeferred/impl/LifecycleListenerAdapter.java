@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.LifecycleListener;
+import org.jdeferred.Promise;
+
+/**
+ * A {@link LifecycleListener} that ignores all events.  Extend it and override
+ * only the events you are interested in.
+ * 
+ * @author Ray Tsang
+ */
+public class LifecycleListenerAdapter implements LifecycleListener {
+	@Override
+	public void onPromiseCreated(Promise<?, ?> promise) {
+	}
+
+	@Override
+	public void onPromiseResolved(Promise<?, ?> promise, Object resolved) {
+	}
+
+	@Override
+	public void onPromiseRejected(Promise<?, ?> promise, Throwable rejected) {
+	}
+
+	@Override
+	public void onPromiseCancelled(Promise<?, ?> promise) {
+	}
+
+	@Override
+	public void onCallbackStarted(Promise<?, ?> promise, Object callback) {
+	}
+
+	@Override
+	public void onCallbackFinished(Promise<?, ?> promise, Object callback, Throwable error) {
+	}
+
+	@Override
+	public void onTaskQueued(DeferredFutureTask<?, ?> task) {
+	}
+
+	@Override
+	public void onTaskStarted(DeferredFutureTask<?, ?> task) {
+	}
+
+	@Override
+	public void onTaskFinished(DeferredFutureTask<?, ?> task) {
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.UncaughtCallbackExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs every uncaught callback exception at error level, including its stack trace.
+ * This is the default {@link UncaughtCallbackExceptionHandler}.
+ * 
+ * @see RateLimitedUncaughtCallbackExceptionHandler
+ * @author Ray Tsang
+ */
+public class LoggingUncaughtCallbackExceptionHandler implements UncaughtCallbackExceptionHandler {
+	private static final Logger log = LoggerFactory.getLogger(AbstractPromise.class);
+
+	@Override
+	public void uncaughtException(Promise<?, ?> promise, Object callback, Throwable exception) {
+		log.error("an uncaught exception occured in a " + callbackType(callback), exception);
+	}
+
+	static String callbackType(Object callback) {
+		if (callback instanceof DoneCallback)
+			return "DoneCallback";
+		if (callback instanceof FailCallback)
+			return "FailCallback";
+		if (callback instanceof ProgressCallback)
+			return "ProgressCallback";
+		if (callback instanceof AlwaysCallback)
+			return "AlwaysCallback";
+		return callback == null ? "callback" : callback.getClass().getName();
+	}
+}
@@ -15,9 +15,9 @@
  */
 package org.jdeferred.impl;
 
-import org.jdeferred.DoneCallback;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
 import org.jdeferred.DonePipe;
-import org.jdeferred.FailCallback;
 import org.jdeferred.FailPipe;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.ProgressPipe;
@@ -26,69 +26,142 @@ import org.jdeferred.Promise;
 import java.util.concurrent.CancellationException;
 
 public class PipedPromise<D, P, D_OUT, P_OUT> extends DeferredObject<D_OUT, P_OUT> implements Promise<D_OUT, P_OUT>{
+	private final DonePipe<D, D_OUT, P_OUT> donePipe;
+	private final FailPipe<D_OUT, P_OUT> failPipe;
+	private final ProgressPipe<P, D_OUT, P_OUT> progressPipe;
+	private final Promise<D, P> upstream;
+	private final Listener listener;
+	
+	/**
+	 * Whether {@link #listener} receives the progress of {@link #upstream}, guarded by <code>this</code>.
+	 */
+	private boolean progressWired;
+	
 	public PipedPromise(final Promise<D, P> promise, final DonePipe<D, D_OUT, P_OUT> donePipe, final FailPipe<D_OUT, P_OUT> failPipe, final ProgressPipe<P, D_OUT, P_OUT> progressPipe) {
-		promise.done(new DoneCallback<D>() {
-			@SuppressWarnings("unchecked")
-			@Override
-			public void onDone(D result) {
-		        if (donePipe != null)
+		if (promise instanceof AbstractPromise)
+			inheritFrom((AbstractPromise<?, ?>) promise);
+		
+		this.donePipe = donePipe;
+		this.failPipe = failPipe;
+		this.progressPipe = progressPipe;
+		
+		this.upstream = promise;
+		this.listener = new Listener();
+		promise.always(listener);
+		// a custom progress pipe may settle this promise, so it must see every progress
+		if (progressPipe != null)
+			wireProgress();
+	}
+	
+	/**
+	 * Subscribes to the progress of the upstream promise once the first progress callback
+	 * is registered, so that a chain nobody observes the progress of does not forward it.
+	 */
+	@Override
+	public Promise<D_OUT, P_OUT> progress(ProgressCallback<P_OUT> callback) {
+		super.progress(callback);
+		wireProgress();
+		return this;
+	}
+	
+	private void wireProgress() {
+		synchronized (this) {
+			if (progressWired || !isPending())
+				return;
+			progressWired = true;
+		}
+		upstream.progress(listener);
+	}
+	
+	@Override
+	public Deferred<D_OUT, P_OUT> cancel() {
+		super.cancel();
+		unwireProgress();
+		return this;
+	}
+	
+	/**
+	 * Stops forwarding progress once this promise finished, since nobody can consume it anymore.
+	 * Callbacks can only be removed from an {@link AbstractPromise}; any other upstream keeps
+	 * calling the listener, which then ignores the progress.
+	 */
+	private void unwireProgress() {
+		if (upstream instanceof AbstractPromise)
+			((AbstractPromise<D, P>) upstream).progressCallbacks.remove(listener);
+	}
+	
+	protected Promise<D_OUT, P_OUT> pipe(Promise<D_OUT, P_OUT> promise) {
+		if (promise.isCancelled()) {
+			cancel();
+		}
+		else {
+			Forwarder forwarder = new Forwarder();
+			promise.always(forwarder).progress(forwarder);
+		}
+		return promise;
+	}
+	
+	/**
+	 * Receives every outcome of the upstream promise, so that a stage registers one
+	 * callback object instead of one per outcome.
+	 */
+	private final class Listener implements AlwaysCallback<D>, ProgressCallback<P> {
+		@SuppressWarnings("unchecked")
+		@Override
+		public void onAlways(State state, D resolved, Throwable rejected) {
+			if (state == State.RESOLVED) {
+				if (donePipe != null)
 					try {
-						pipe(donePipe.pipeDone(result));
+						pipe(donePipe.pipeDone(resolved));
 					} catch (CancellationException e) {
 						PipedPromise.this.cancel();
 					} catch (Exception e) {
 						PipedPromise.this.reject(e);
 					}
-	            else PipedPromise.this.resolve((D_OUT) result);
-			}
-		}).fail(new FailCallback() {
-			@Override
-			public void onFail(Throwable result) {
+				else PipedPromise.this.resolve((D_OUT) resolved);
+			} else if (state == State.REJECTED) {
 				if (failPipe != null)
 					try {
-						pipe(failPipe.pipeFail(result));
+						pipe(failPipe.pipeFail(rejected));
 					} catch (CancellationException e) {
 						PipedPromise.this.cancel();
 					}
-				else PipedPromise.this.reject(result);
+				else PipedPromise.this.reject(rejected);
 			}
-		}).progress(new ProgressCallback<P>() {
-			@SuppressWarnings("unchecked")
-			@Override
-			public void onProgress(P progress) {
-				if (progressPipe != null)
-					try {
-						pipe(progressPipe.pipeProgress(progress));
-					} catch (CancellationException e) {
-						PipedPromise.this.cancel();
-					}
-				else PipedPromise.this.notify((P_OUT) progress);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public void onProgress(P progress) {
+			if (!isPending()) {
+				unwireProgress();
+				return;
 			}
-		});
+			if (progressPipe != null)
+				try {
+					pipe(progressPipe.pipeProgress(progress));
+				} catch (CancellationException e) {
+					PipedPromise.this.cancel();
+				}
+			else PipedPromise.this.notify((P_OUT) progress);
+		}
 	}
 	
-	protected Promise<D_OUT, P_OUT> pipe(Promise<D_OUT, P_OUT> promise) {
-		if (promise.isCancelled()) {
-			cancel();
+	/**
+	 * Forwards every outcome of a piped promise to this one.
+	 */
+	private final class Forwarder implements AlwaysCallback<D_OUT>, ProgressCallback<P_OUT> {
+		@Override
+		public void onAlways(State state, D_OUT resolved, Throwable rejected) {
+			if (state == State.RESOLVED)
+				PipedPromise.this.resolve(resolved);
+			else if (state == State.REJECTED)
+				PipedPromise.this.reject(rejected);
 		}
-		else {
-			promise.done(new DoneCallback<D_OUT>() {
-				@Override
-				public void onDone(D_OUT result) {
-					PipedPromise.this.resolve(result);
-				}
-			}).fail(new FailCallback() {
-				@Override
-				public void onFail(Throwable result) {
-					PipedPromise.this.reject(result);
-				}
-			}).progress(new ProgressCallback<P_OUT>() {
-				@Override
-				public void onProgress(P_OUT progress) {
-					PipedPromise.this.notify(progress);
-				}
-			});
+		
+		@Override
+		public void onProgress(P_OUT progress) {
+			PipedPromise.this.notify(progress);
 		}
-		return promise;
 	}
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredFutureTask;
+
+/**
+ * A {@link DefaultDeferredManager} running waiting tasks by priority, on a fixed number
+ * of threads.  See {@link DeferredFutureTask#setPriority(int)},
+ * {@link org.jdeferred.DeferredCallable#DeferredCallable(int)} and
+ * {@link org.jdeferred.DeferredRunnable#DeferredRunnable(int)}.
+ * 
+ * Waiting tasks age so that low priority tasks are not starved: a task that waited
+ * for one aging interval longer than another one ranks as if its priority were one
+ * higher.  Tasks of equal rank run in submission order.
+ * 
+ * <pre>
+ * <code>
+ * PriorityDeferredManager dm = new PriorityDeferredManager(8, 500, TimeUnit.MILLISECONDS);
+ * dm.when(new DeferredCallable&lt;Report, Void&gt;(-10) { ... });
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class PriorityDeferredManager extends AbstractOrderedDeferredManager {
+	public static final long DEFAULT_AGING_INTERVAL_MILLIS = 1000;
+	
+	private static final long MAX_BOOST = Long.MAX_VALUE / 4;
+	
+	private final long agingIntervalNanos;
+	
+	/**
+	 * Equivalent to {@link #PriorityDeferredManager(int, long, TimeUnit)} aging tasks
+	 * by one priority every {@link #DEFAULT_AGING_INTERVAL_MILLIS} milliseconds.
+	 */
+	public PriorityDeferredManager(int nThreads) {
+		this(nThreads, DEFAULT_AGING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param nThreads number of threads running tasks
+	 * @param agingInterval waiting time worth one priority
+	 */
+	public PriorityDeferredManager(int nThreads, long agingInterval, TimeUnit unit) {
+		super(nThreads, new ByRank(unit.toNanos(agingInterval)));
+		if (agingInterval <= 0)
+			throw new IllegalArgumentException("agingInterval must be positive");
+		this.agingIntervalNanos = unit.toNanos(agingInterval);
+	}
+	
+	public long getAgingInterval(TimeUnit unit) {
+		return unit.convert(agingIntervalNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Orders tasks by a virtual submission time: the submission time moved back by one
+	 * aging interval per priority.  Unlike an effective priority, it does not change while
+	 * the task waits, so it can order a heap.
+	 */
+	private static final class ByRank implements Comparator<OrderedTask> {
+		private final long agingIntervalNanos;
+		
+		ByRank(long agingIntervalNanos) {
+			this.agingIntervalNanos = agingIntervalNanos;
+		}
+		
+		@Override
+		public int compare(OrderedTask a, OrderedTask b) {
+			long diff = rank(a) - rank(b);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+		
+		private long rank(OrderedTask task) {
+			int priority = task.task instanceof DeferredFutureTask
+					? ((DeferredFutureTask<?, ?>) task.task).getPriority()
+					: DeferredFutureTask.DEFAULT_PRIORITY;
+			long boost = MAX_BOOST / agingIntervalNanos < Math.abs((long) priority)
+					? (priority < 0 ? -MAX_BOOST : MAX_BOOST)
+					: priority * agingIntervalNanos;
+			return task.submittedTime - boost;
+		}
+	}
+}
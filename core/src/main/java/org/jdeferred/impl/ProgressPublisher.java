@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+import org.jdeferred.flow.Publisher;
+import org.jdeferred.flow.Subscriber;
+import org.jdeferred.flow.Subscription;
+
+/**
+ * Exposes the progress channel of a {@link Promise} as a {@link Publisher}.
+ * 
+ * Every {@link Subscriber} gets its own buffer of up to {@link #DEFAULT_BUFFER_SIZE}
+ * progress values.  Values are only handed to the {@link Subscriber} once they were
+ * requested, either on the thread that calls {@link org.jdeferred.Deferred#notify(Object)}
+ * or on the thread that calls {@link Subscription#request(long)}.  The producer can
+ * consult {@link #demand()} to slow down; if it keeps notifying while a buffer is full,
+ * that subscription is terminated with an {@link IllegalStateException}.
+ * 
+ * The stream completes once the promise is resolved and all buffered values were
+ * delivered.  It fails right away with the rejection when the promise is rejected.
+ * <code>null</code> progress values are skipped.
+ * 
+ * @see AbstractPromise#progressPublisher()
+ * @author Ray Tsang
+ *
+ * @param <D> Type used for {@link org.jdeferred.Deferred#resolve(Object)}
+ * @param <P> Type used for {@link org.jdeferred.Deferred#notify(Object)}
+ */
+public class ProgressPublisher<D, P> implements Publisher<P>, ProgressCallback<P>, AlwaysCallback<D> {
+	public static final int DEFAULT_BUFFER_SIZE = 256;
+
+	private final AbstractPromise<D, P> promise;
+	private final int bufferSize;
+	private final List<ProgressSubscription> subscriptions = new CopyOnWriteArrayList<ProgressSubscription>();
+
+	public ProgressPublisher(AbstractPromise<D, P> promise) {
+		this(promise, DEFAULT_BUFFER_SIZE);
+	}
+
+	public ProgressPublisher(AbstractPromise<D, P> promise, int bufferSize) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("bufferSize must be positive");
+		this.promise = promise;
+		this.bufferSize = bufferSize;
+		promise.progress(this).always(this);
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super P> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("subscriber");
+		
+		ProgressSubscription subscription = new ProgressSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscriptions.add(subscription);
+		
+		// the promise may have finished before the subscription was added
+		if (!promise.isPending()) {
+			subscription.complete(terminalError(promise.state(), null));
+		}
+	}
+
+	/**
+	 * Returns how many more progress values can be notified before the slowest
+	 * subscriber runs out of demand, or {@link Long#MAX_VALUE} if there are no subscribers.
+	 * 
+	 * @return outstanding demand of the slowest subscriber
+	 */
+	public long demand() {
+		long demand = Long.MAX_VALUE;
+		for (ProgressSubscription subscription : subscriptions) {
+			demand = Math.min(demand, subscription.demand());
+		}
+		return demand;
+	}
+
+	@Override
+	public void onProgress(P progress) {
+		if (progress == null)
+			return;
+		for (ProgressSubscription subscription : subscriptions) {
+			subscription.offer(progress);
+		}
+	}
+
+	@Override
+	public void onAlways(State state, D resolved, Throwable rejected) {
+		Throwable error = terminalError(state, rejected);
+		for (ProgressSubscription subscription : subscriptions) {
+			subscription.complete(error);
+		}
+	}
+
+	private Throwable terminalError(State state, Throwable rejected) {
+		switch (state) {
+		case REJECTED:
+			return rejected == null ? promise.rejectResult : rejected;
+		case CANCELLED:
+			return new CancellationException();
+		default:
+			return null;
+		}
+	}
+
+	private final class ProgressSubscription implements Subscription {
+		private final Subscriber<? super P> subscriber;
+		private final Queue<P> queue = new ConcurrentLinkedQueue<P>();
+		private final AtomicInteger queued = new AtomicInteger();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		
+		private volatile boolean cancelled;
+		private volatile boolean done;
+		private volatile Throwable error;
+		private boolean terminated;
+
+		ProgressSubscription(Subscriber<? super P> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		long demand() {
+			return Math.max(0, requested.get() - queued.get());
+		}
+
+		void offer(P progress) {
+			if (cancelled || done)
+				return;
+			
+			if (queued.get() >= bufferSize) {
+				subscriptions.remove(this);
+				complete(new IllegalStateException("progress buffer of " + bufferSize
+						+ " overflowed, notify(...) was called without demand"));
+				return;
+			}
+			
+			queue.offer(progress);
+			queued.incrementAndGet();
+			drain();
+		}
+
+		void complete(Throwable error) {
+			if (done)
+				return;
+			this.error = error;
+			this.done = true;
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				subscriptions.remove(this);
+				complete(new IllegalArgumentException("non-positive request: " + n));
+				return;
+			}
+			
+			for (;;) {
+				long current = requested.get();
+				long next = current + n;
+				if (next < 0)
+					next = Long.MAX_VALUE;
+				if (requested.compareAndSet(current, next))
+					break;
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			drain();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				return;
+			
+			int missed = 1;
+			for (;;) {
+				if (terminated)
+					return;
+				
+				long limit = requested.get();
+				long emitted = 0;
+				
+				for (;;) {
+					if (cancelled) {
+						queue.clear();
+						terminated = true;
+						return;
+					}
+					
+					// failures cut ahead of buffered progress
+					boolean finished = done;
+					if (finished && error != null) {
+						terminate();
+						return;
+					}
+					
+					if (emitted == limit) {
+						if (finished && queue.isEmpty()) {
+							terminate();
+							return;
+						}
+						break;
+					}
+					
+					P progress = queue.poll();
+					if (progress == null) {
+						if (finished) {
+							terminate();
+							return;
+						}
+						break;
+					}
+					
+					queued.decrementAndGet();
+					try {
+						subscriber.onNext(progress);
+					} catch (Throwable e) {
+						// the subscriber broke the contract, stop delivering to it
+						cancelled = true;
+						subscriptions.remove(this);
+						terminated = true;
+						queue.clear();
+						subscriber.onError(e);
+						return;
+					}
+					emitted++;
+				}
+				
+				if (emitted != 0 && limit != Long.MAX_VALUE)
+					requested.addAndGet(-emitted);
+				
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					break;
+			}
+		}
+
+		private void terminate() {
+			terminated = true;
+			queue.clear();
+			if (error != null)
+				subscriber.onError(error);
+			else
+				subscriber.onComplete();
+		}
+	}
+}
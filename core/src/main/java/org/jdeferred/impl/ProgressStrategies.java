@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.ProgressStrategy;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+
+/**
+ * Built-in {@link ProgressStrategy} implementations.
+ * 
+ * Except for {@link #all()}, progress is handed off to an {@link Executor} so that
+ * {@link org.jdeferred.Deferred#notify(Object)} never waits for a slow {@link ProgressCallback}.
+ * A callback is never invoked concurrently with itself, and values reach it in the order
+ * they were notified.  Progress delivered this way is not ordered with respect to the
+ * done/fail/always callbacks of the same promise.
+ * 
+ * <pre>
+ * <code>
+ * promise.progress(new ProgressCallback&lt;Long&gt;() { ... },
+ *     ProgressStrategies.sample(250, TimeUnit.MILLISECONDS, scheduler));
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public final class ProgressStrategies {
+	private static final Object EMPTY = new Object();
+	private static final Object NULL = new Object();
+
+	private static final ProgressStrategy ALL = new ProgressStrategy() {
+		@Override
+		public <D, P> ProgressCallback<P> apply(Promise<D, P> promise, ProgressCallback<P> callback) {
+			return callback;
+		}
+	};
+
+	private ProgressStrategies() {
+	}
+
+	/**
+	 * Delivers every value inline on the notifying thread.  This is what
+	 * {@link Promise#progress(ProgressCallback)} does.
+	 * 
+	 * @return
+	 */
+	public static ProgressStrategy all() {
+		return ALL;
+	}
+
+	/**
+	 * Delivers only the most recent value; values notified while the callback is busy
+	 * replace each other.
+	 * 
+	 * @param executor runs the callback
+	 * @return
+	 */
+	public static ProgressStrategy latest(final Executor executor) {
+		assertNotNull(executor, "executor");
+		return new ProgressStrategy() {
+			@Override
+			public <D, P> ProgressCallback<P> apply(Promise<D, P> promise, ProgressCallback<P> callback) {
+				return new ConflatingProgressCallback<P>(promise, callback, executor);
+			}
+		};
+	}
+
+	/**
+	 * Buffers up to <code>capacity</code> values for the callback and drops the oldest
+	 * buffered value once the buffer is full.
+	 * 
+	 * @param capacity maximum number of buffered values
+	 * @param executor runs the callback
+	 * @return
+	 */
+	public static ProgressStrategy dropOldest(final int capacity, final Executor executor) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		assertNotNull(executor, "executor");
+		return new ProgressStrategy() {
+			@Override
+			public <D, P> ProgressCallback<P> apply(Promise<D, P> promise, ProgressCallback<P> callback) {
+				return new BufferingProgressCallback<P>(promise, callback, executor, capacity);
+			}
+		};
+	}
+
+	/**
+	 * Delivers the most recent value at most once per <code>period</code>.  The timer is
+	 * started by the first notified value and stopped when the promise is resolved or
+	 * rejected, at which point a still undelivered value is flushed.  If the promise is
+	 * cancelled, the timer stops at its next tick without delivering.
+	 * 
+	 * @param period sampling period
+	 * @param unit unit of <code>period</code>
+	 * @param scheduler runs the timer and the callback
+	 * @return
+	 */
+	public static ProgressStrategy sample(final long period, final TimeUnit unit, final ScheduledExecutorService scheduler) {
+		if (period <= 0)
+			throw new IllegalArgumentException("period must be positive");
+		assertNotNull(unit, "unit");
+		assertNotNull(scheduler, "scheduler");
+		return new ProgressStrategy() {
+			@Override
+			public <D, P> ProgressCallback<P> apply(Promise<D, P> promise, ProgressCallback<P> callback) {
+				SamplingProgressCallback<D, P> sampling = new SamplingProgressCallback<D, P>(
+						promise, callback, scheduler, unit.toNanos(period));
+				promise.always((AlwaysCallback<D>) sampling);
+				return sampling;
+			}
+		};
+	}
+
+	private static void assertNotNull(Object value, String name) {
+		if (value == null)
+			throw new NullPointerException(name);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <P> void deliver(Promise<?, P> promise, ProgressCallback<P> callback, Object progress) {
+		try {
+			callback.onProgress(progress == NULL ? null : (P) progress);
+		} catch (Exception e) {
+			if (promise instanceof AbstractPromise) {
+				((AbstractPromise<?, P>) promise).handleUncaughtCallbackException(callback, e);
+			} else {
+				AbstractPromise.getDefaultUncaughtCallbackExceptionHandler().uncaughtException(promise, callback, e);
+			}
+		}
+	}
+
+	/**
+	 * Base for callbacks that hand progress off to an {@link Executor}.  A work-in-progress
+	 * counter makes sure at most one drain task is queued or running at any time.
+	 */
+	private static abstract class ExecutorProgressCallback<P> implements ProgressCallback<P>, Runnable {
+		private final Promise<?, P> promise;
+		private final ProgressCallback<P> callback;
+		private final Executor executor;
+		private final AtomicInteger wip = new AtomicInteger();
+
+		ExecutorProgressCallback(Promise<?, P> promise, ProgressCallback<P> callback, Executor executor) {
+			this.promise = promise;
+			this.callback = callback;
+			this.executor = executor;
+		}
+
+		@Override
+		public void onProgress(P progress) {
+			offer(progress == null ? NULL : progress);
+			if (wip.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// e.g., the executor was shut down; deliver here rather than never again
+					run();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			for (;;) {
+				Object progress;
+				while ((progress = poll()) != EMPTY) {
+					deliver(promise, callback, progress);
+				}
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					break;
+			}
+		}
+
+		protected abstract void offer(Object progress);
+
+		protected abstract Object poll();
+	}
+
+	private static final class ConflatingProgressCallback<P> extends ExecutorProgressCallback<P> {
+		private final AtomicReference<Object> latest = new AtomicReference<Object>(EMPTY);
+
+		ConflatingProgressCallback(Promise<?, P> promise, ProgressCallback<P> callback, Executor executor) {
+			super(promise, callback, executor);
+		}
+
+		@Override
+		protected void offer(Object progress) {
+			latest.set(progress);
+		}
+
+		@Override
+		protected Object poll() {
+			return latest.getAndSet(EMPTY);
+		}
+	}
+
+	private static final class BufferingProgressCallback<P> extends ExecutorProgressCallback<P> {
+		private final Queue<Object> buffer = new ConcurrentLinkedQueue<Object>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final int capacity;
+
+		BufferingProgressCallback(Promise<?, P> promise, ProgressCallback<P> callback, Executor executor, int capacity) {
+			super(promise, callback, executor);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected void offer(Object progress) {
+			buffer.offer(progress);
+			if (size.incrementAndGet() > capacity && buffer.poll() != null) {
+				size.decrementAndGet();
+			}
+		}
+
+		@Override
+		protected Object poll() {
+			Object progress = buffer.poll();
+			if (progress == null)
+				return EMPTY;
+			size.decrementAndGet();
+			return progress;
+		}
+	}
+
+	private static final class SamplingProgressCallback<D, P> implements ProgressCallback<P>, AlwaysCallback<D>, Runnable {
+		private final Promise<D, P> promise;
+		private final ProgressCallback<P> callback;
+		private final ScheduledExecutorService scheduler;
+		private final long periodNanos;
+		private final AtomicReference<Object> latest = new AtomicReference<Object>(EMPTY);
+		private volatile ScheduledFuture<?> timer;
+		private volatile boolean finished;
+
+		SamplingProgressCallback(Promise<D, P> promise, ProgressCallback<P> callback, ScheduledExecutorService scheduler, long periodNanos) {
+			this.promise = promise;
+			this.callback = callback;
+			this.scheduler = scheduler;
+			this.periodNanos = periodNanos;
+		}
+
+		@Override
+		public void onProgress(P progress) {
+			latest.set(progress == null ? NULL : progress);
+			if (timer == null && !finished) {
+				// notify(...) is serialized by the deferred, so the timer is started once
+				timer = scheduler.scheduleAtFixedRate(this, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		@Override
+		public void onAlways(State state, D resolved, Throwable rejected) {
+			finished = true;
+			ScheduledFuture<?> timer = this.timer;
+			if (timer != null) {
+				timer.cancel(false);
+				scheduler.execute(this);
+			}
+		}
+
+		@Override
+		public synchronized void run() {
+			if (promise.isCancelled()) {
+				// cancel() triggers no callbacks, so the timer stops itself
+				finished = true;
+				ScheduledFuture<?> timer = this.timer;
+				if (timer != null)
+					timer.cancel(false);
+				return;
+			}
+			Object progress = latest.getAndSet(EMPTY);
+			if (progress != EMPTY) {
+				deliver(promise, callback, progress);
+			}
+		}
+	}
+}
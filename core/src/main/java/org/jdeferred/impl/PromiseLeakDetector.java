@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in detector for promises that are garbage collected while still pending,
+ * i.e., deferred objects that were forgotten and will never be resolved or rejected.
+ * 
+ * When enabled, roughly one out of {@link #getSamplingInterval()} promises remembers
+ * where it was created.  Leaks are found while tracking new promises, or by calling
+ * {@link #reportLeaks()}, and are logged at warn level together with the creation site.
+ * 
+ * <pre>
+ * <code>
+ * PromiseLeakDetector.setSamplingInterval(128);
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public final class PromiseLeakDetector {
+	private static final Logger log = LoggerFactory.getLogger(PromiseLeakDetector.class);
+
+	private static volatile int samplingInterval;
+
+	private static final AtomicInteger sampleCounter = new AtomicInteger();
+	private static final AtomicLong leakCount = new AtomicLong();
+	private static final ReferenceQueue<AbstractPromise<?, ?>> queue = new ReferenceQueue<AbstractPromise<?, ?>>();
+	private static final ConcurrentMap<Record, Boolean> records = new ConcurrentHashMap<Record, Boolean>();
+
+	private PromiseLeakDetector() {
+	}
+
+	/**
+	 * @param interval track one out of <code>interval</code> promises, 1 to track every promise,
+	 * or 0 to disable the detector
+	 */
+	public static void setSamplingInterval(int interval) {
+		if (interval < 0)
+			throw new IllegalArgumentException("interval must not be negative");
+		samplingInterval = interval;
+	}
+
+	public static int getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/**
+	 * @return number of leaked promises reported so far
+	 */
+	public static long getLeakCount() {
+		return leakCount.get();
+	}
+
+	/**
+	 * Reports all tracked promises that were garbage collected while pending since the last report.
+	 * 
+	 * @return number of leaks found
+	 */
+	public static int reportLeaks() {
+		int leaks = 0;
+		Reference<? extends AbstractPromise<?, ?>> reference;
+		while ((reference = queue.poll()) != null) {
+			Record record = (Record) reference;
+			if (records.remove(record) != null) {
+				leaks++;
+				leakCount.incrementAndGet();
+				log.warn("a promise was garbage collected while still pending, it will never be resolved or rejected; "
+						+ "it was created at", record.creationSite);
+			}
+		}
+		return leaks;
+	}
+
+	/**
+	 * @return a record to close once the promise finished, or <code>null</code> if it is not tracked
+	 */
+	static Record track(AbstractPromise<?, ?> promise) {
+		int interval = samplingInterval;
+		if (interval <= 0 || (interval > 1 && sampleCounter.incrementAndGet() % interval != 0))
+			return null;
+		
+		reportLeaks();
+		Record record = new Record(promise);
+		records.put(record, Boolean.TRUE);
+		return record;
+	}
+
+	static final class Record extends WeakReference<AbstractPromise<?, ?>> {
+		private final Throwable creationSite;
+
+		Record(AbstractPromise<?, ?> promise) {
+			super(promise, queue);
+			this.creationSite = new Throwable("promise created by thread " + Thread.currentThread().getName());
+		}
+
+		void close() {
+			records.remove(this);
+			clear();
+		}
+	}
+}
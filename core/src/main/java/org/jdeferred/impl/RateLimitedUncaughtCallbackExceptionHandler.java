@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.Promise;
+import org.jdeferred.UncaughtCallbackExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link UncaughtCallbackExceptionHandler} that keeps logging cheap when callbacks
+ * fail in bulk, e.g., while a downstream system is broken.
+ * 
+ * <ul>
+ * <li>Exceptions are grouped by callback class, exception class and throwing stack frame.
+ * Each group is logged at most once per interval; repeats are counted and reported with
+ * the next log line of that group.</li>
+ * <li>Across all groups, at most <code>maxLogsPerInterval</code> stack traces are logged
+ * per interval.  Once they are used up, further exceptions are only counted, without
+ * grouping them, and no group gives up its own log for them.</li>
+ * <li>All exceptions are counted, see {@link #getExceptionCount()} and {@link #getSuppressedCount()}.</li>
+ * </ul>
+ * 
+ * <pre>
+ * <code>
+ * AbstractPromise.setDefaultUncaughtCallbackExceptionHandler(
+ *     new RateLimitedUncaughtCallbackExceptionHandler(10, 1, TimeUnit.MINUTES));
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class RateLimitedUncaughtCallbackExceptionHandler implements UncaughtCallbackExceptionHandler {
+	private static final Logger log = LoggerFactory.getLogger(AbstractPromise.class);
+
+	/**
+	 * Upper bound of distinct exception groups that are tracked; once reached,
+	 * exceptions of new groups are only subject to the global limit.
+	 */
+	public static final int MAX_TRACKED_GROUPS = 1024;
+
+	private final int maxLogsPerInterval;
+	private final long intervalNanos;
+
+	private final AtomicLong exceptionCount = new AtomicLong();
+	private final AtomicLong suppressedCount = new AtomicLong();
+	private final ConcurrentMap<GroupKey, Group> groups = new ConcurrentHashMap<GroupKey, Group>();
+
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+	private final AtomicInteger logsInWindow = new AtomicInteger();
+
+	/**
+	 * Equivalent to {@link #RateLimitedUncaughtCallbackExceptionHandler(int, long, TimeUnit)}
+	 * with 10 logs per minute.
+	 */
+	public RateLimitedUncaughtCallbackExceptionHandler() {
+		this(10, 1, TimeUnit.MINUTES);
+	}
+
+	public RateLimitedUncaughtCallbackExceptionHandler(int maxLogsPerInterval, long interval, TimeUnit unit) {
+		if (maxLogsPerInterval <= 0)
+			throw new IllegalArgumentException("maxLogsPerInterval must be positive");
+		if (interval <= 0)
+			throw new IllegalArgumentException("interval must be positive");
+		this.maxLogsPerInterval = maxLogsPerInterval;
+		this.intervalNanos = unit.toNanos(interval);
+	}
+
+	@Override
+	public void uncaughtException(Promise<?, ?> promise, Object callback, Throwable exception) {
+		exceptionCount.incrementAndGet();
+		
+		// the global budget is checked first, so that a burst costs no stack trace lookup
+		long now = System.nanoTime();
+		if (!hasBudget(now)) {
+			suppressedCount.incrementAndGet();
+			return;
+		}
+		Group group = group(callback, exception, now);
+		if ((group != null && !group.tryLog(now, intervalNanos)) || !tryLog(now)) {
+			if (group != null)
+				group.suppressed.incrementAndGet();
+			suppressedCount.incrementAndGet();
+			return;
+		}
+		
+		long suppressed = group == null ? 0 : group.suppressed.getAndSet(0);
+		String type = LoggingUncaughtCallbackExceptionHandler.callbackType(callback);
+		if (suppressed > 0) {
+			log.error("an uncaught exception occured in a " + type
+					+ " (" + suppressed + " similar exceptions were suppressed)", exception);
+		} else {
+			log.error("an uncaught exception occured in a " + type, exception);
+		}
+	}
+
+	/**
+	 * @return number of exceptions passed to this handler
+	 */
+	public long getExceptionCount() {
+		return exceptionCount.get();
+	}
+
+	/**
+	 * @return number of exceptions that were counted but not logged
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount.get();
+	}
+
+	/**
+	 * @return whether the current interval has logs left, without using one
+	 */
+	private boolean hasBudget(long now) {
+		long start = windowStart.get();
+		if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+			logsInWindow.set(0);
+		}
+		return logsInWindow.get() < maxLogsPerInterval;
+	}
+
+	private boolean tryLog(long now) {
+		return hasBudget(now) && logsInWindow.incrementAndGet() <= maxLogsPerInterval;
+	}
+
+	private Group group(Object callback, Throwable exception, long now) {
+		StackTraceElement[] stackTrace = exception.getStackTrace();
+		GroupKey key = new GroupKey(callback == null ? null : callback.getClass(), exception.getClass(),
+				stackTrace.length == 0 ? null : stackTrace[0]);
+		
+		Group group = groups.get(key);
+		if (group == null) {
+			if (groups.size() >= MAX_TRACKED_GROUPS)
+				return null;
+			Group created = new Group(now - intervalNanos);
+			group = groups.putIfAbsent(key, created);
+			if (group == null)
+				group = created;
+		}
+		return group;
+	}
+
+	/**
+	 * Callback class, exception class and the frame that threw, compared without
+	 * building any strings.
+	 */
+	private static final class GroupKey {
+		final Class<?> callbackClass;
+		final Class<?> exceptionClass;
+		final StackTraceElement frame;
+		final int hash;
+
+		GroupKey(Class<?> callbackClass, Class<?> exceptionClass, StackTraceElement frame) {
+			this.callbackClass = callbackClass;
+			this.exceptionClass = exceptionClass;
+			this.frame = frame;
+			this.hash = 31 * (31 * System.identityHashCode(callbackClass) + exceptionClass.hashCode())
+					+ (frame == null ? 0 : frame.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof GroupKey))
+				return false;
+			GroupKey other = (GroupKey) obj;
+			return callbackClass == other.callbackClass && exceptionClass == other.exceptionClass
+					&& (frame == null ? other.frame == null : frame.equals(other.frame));
+		}
+	}
+
+	private static final class Group {
+		final AtomicLong lastLogged;
+		final AtomicLong suppressed = new AtomicLong();
+
+		Group(long lastLogged) {
+			this.lastLogged = new AtomicLong(lastLogged);
+		}
+
+		boolean tryLog(long now, long intervalNanos) {
+			long last = lastLogged.get();
+			return now - last >= intervalNanos && lastLogged.compareAndSet(last, now);
+		}
+	}
+}
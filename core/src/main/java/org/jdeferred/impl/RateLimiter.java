@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the rate at which tasks are submitted, see
+ * {@link AbstractDeferredManager#setRateLimiter(RateLimiter)}.
+ * 
+ * Up to <code>burst</code> tasks are submitted at once, after which tasks are let through at
+ * <code>permitsPerSecond</code>.  A task over the limit is delayed on the manager's timer if
+ * it can be submitted within {@link #getMaxDelay(TimeUnit)}, and rejected with a
+ * {@link RateLimitExceededException} otherwise.  The default maximum delay is 0, i.e.,
+ * tasks over the limit are rejected right away.
+ * 
+ * The bucket is a single atomic timestamp (the generic cell rate algorithm), so
+ * reserving a permit is lock-free.
+ * 
+ * <pre>
+ * <code>
+ * RateLimiter limiter = new RateLimiter(100, 20);
+ * limiter.setMaxDelay(1, TimeUnit.SECONDS);
+ * dm.setRateLimiter(limiter);
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class RateLimiter {
+	private final long intervalNanos;
+	private final long toleranceNanos;
+	private volatile long maxDelayNanos;
+	
+	/**
+	 * Time at which the bucket is empty again, i.e., at which the next permit would be
+	 * granted if no burst were allowed.
+	 */
+	private final AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+	
+	/**
+	 * @param permitsPerSecond sustained rate of tasks
+	 * @param burst number of tasks that may be submitted at once
+	 */
+	public RateLimiter(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0)
+			throw new IllegalArgumentException("permitsPerSecond must be positive");
+		if (burst <= 0)
+			throw new IllegalArgumentException("burst must be positive");
+		
+		this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.toleranceNanos = (burst - 1) * intervalNanos;
+	}
+	
+	/**
+	 * @param maxDelay how long a task over the limit may be delayed before it is rejected instead
+	 */
+	public void setMaxDelay(long maxDelay, TimeUnit unit) {
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+	}
+	
+	public long getMaxDelay(TimeUnit unit) {
+		return unit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Reserves a permit.
+	 * 
+	 * @return nanoseconds to wait before using the permit, or -1 if no permit is
+	 * available within the maximum delay
+	 */
+	public long reserve() {
+		long maxDelay = maxDelayNanos;
+		for (;;) {
+			long now = System.nanoTime();
+			long current = theoreticalArrivalTime.get();
+			long start = current - now < 0 ? now : current;
+			long delay = Math.max(0, start - now - toleranceNanos);
+			if (delay > maxDelay)
+				return -1;
+			if (theoreticalArrivalTime.compareAndSet(current, start + intervalNanos))
+				return delay;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+
+/**
+ * A {@link DeferredObject} that is reused instead of garbage collected.
+ * 
+ * Instances are obtained from a pool of the current thread with {@link #obtain()}.  Once the
+ * deferred is resolved, rejected or cancelled, and all callbacks registered so far have run, it
+ * goes back to the pool of the thread that obtained it, together with its callback lists, to be
+ * handed out again as a new pending deferred.  Instances finished on another thread, e.g., a
+ * worker completing a request of an I/O thread, are handed back through a lock-free queue.  A finished instance must thus no longer be used
+ * by anybody: all callbacks must be registered before it finishes, and the result is only
+ * available to those callbacks.
+ * 
+ * Each reuse increments {@link #getGeneration()}.  A holder that may outlive the deferred
+ * remembers the generation it obtained, and completes the deferred with
+ * {@link #resolve(int, Object)} or {@link #reject(int, Throwable)}, which fail instead of
+ * completing a later use of the same instance.  Any other use of an instance sitting in the
+ * pool fails with an {@link IllegalStateException}.
+ * 
+ * <pre>
+ * <code>
+ * final RecyclableDeferredObject&lt;Response, Void&gt; deferred = RecyclableDeferredObject.obtain();
+ * final int generation = deferred.getGeneration();
+ * deferred.done(new DoneCallback&lt;Response&gt;() { ... });
+ * 
+ * // later, maybe on another thread
+ * deferred.resolve(generation, response);
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class RecyclableDeferredObject<D, P> extends DeferredObject<D, P> {
+	/**
+	 * Maximum number of idle instances kept by each thread, counted separately for the
+	 * instances finished on the thread itself and those handed back by other threads.
+	 */
+	public static final int MAX_POOLED_PER_THREAD = 64;
+	
+	private static final ThreadLocal<Pool> pool = new ThreadLocal<Pool>() {
+		@Override
+		protected Pool initialValue() {
+			return new Pool(Thread.currentThread());
+		}
+	};
+	
+	/**
+	 * The pool of the thread that created this instance, which it always returns to.
+	 */
+	private final Pool owner = pool.get();
+	
+	/**
+	 * Guarded by <code>this</code>.
+	 */
+	private boolean recycled;
+	private volatile int generation;
+	
+	protected RecyclableDeferredObject() {
+	}
+	
+	/**
+	 * @return a pending deferred from the pool of the current thread, or a new one if the pool is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public static <D, P> RecyclableDeferredObject<D, P> obtain() {
+		RecyclableDeferredObject<D, P> deferred = (RecyclableDeferredObject<D, P>) pool.get().poll();
+		if (deferred == null)
+			return new RecyclableDeferredObject<D, P>();
+		
+		synchronized (deferred) {
+			deferred.recycled = false;
+		}
+		return deferred;
+	}
+	
+	/**
+	 * @return the number of times this instance was handed out by {@link #obtain()} before
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * @param generation the generation this deferred was obtained with
+	 * @throws IllegalStateException if this deferred was recycled since
+	 */
+	public synchronized void checkGeneration(int generation) {
+		checkNotRecycled();
+		if (generation != this.generation)
+			throw new IllegalStateException("Deferred object was recycled, generation " + generation + " is over");
+	}
+	
+	/**
+	 * Resolves this deferred, unless it was recycled since <code>generation</code>.
+	 * 
+	 * @throws IllegalStateException if this deferred was recycled or is already finished
+	 */
+	public synchronized Deferred<D, P> resolve(int generation, D resolve) {
+		checkGeneration(generation);
+		return resolve(resolve);
+	}
+	
+	/**
+	 * Rejects this deferred, unless it was recycled since <code>generation</code>.
+	 * 
+	 * @throws IllegalStateException if this deferred was recycled or is already finished
+	 */
+	public synchronized Deferred<D, P> reject(int generation, Throwable reject) {
+		checkGeneration(generation);
+		return reject(reject);
+	}
+	
+	@Override
+	public Deferred<D, P> resolve(D resolve) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.resolve(resolve);
+			recycle();
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> reject(Throwable reject) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.reject(reject);
+			recycle();
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> cancel() {
+		synchronized (this) {
+			checkNotRecycled();
+			super.cancel();
+			recycle();
+		}
+		return this;
+	}
+	
+	@Override
+	public Deferred<D, P> notify(P progress) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.notify(progress);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> done(DoneCallback<D> callback) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.done(callback);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> fail(FailCallback callback) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.fail(callback);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> always(AlwaysCallback<D> callback) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.always(callback);
+		}
+		return this;
+	}
+	
+	@Override
+	public Promise<D, P> progress(ProgressCallback<P> callback) {
+		synchronized (this) {
+			checkNotRecycled();
+			super.progress(callback);
+		}
+		return this;
+	}
+	
+	/**
+	 * Waits until the generation this method was called in is finished, even if the
+	 * instance is pending again afterwards.
+	 */
+	@Override
+	public void waitSafely(long timeout) throws InterruptedException {
+		final long startTime = System.currentTimeMillis();
+		synchronized (this) {
+			if (recycled)
+				return;
+			final int generation = this.generation;
+			while (this.generation == generation && !recycled && isPending()) {
+				if (timeout <= 0) {
+					wait();
+				} else {
+					final long waitTime = timeout - (System.currentTimeMillis() - startTime);
+					if (waitTime <= 0)
+						return;
+					wait(waitTime);
+				}
+			}
+		}
+	}
+	
+	private void checkNotRecycled() {
+		if (recycled)
+			throw new IllegalStateException("Deferred object was recycled, it must not be used after it finished");
+	}
+	
+	/**
+	 * Called with the monitor held, after all callbacks ran.  A finish that threw, e.g., because
+	 * a callback tried to finish this deferred again, does not recycle it.
+	 */
+	private void recycle() {
+		recycled = true;
+		reset();
+		generation++;
+		notifyAll();
+		owner.offer(this);
+	}
+	
+	/**
+	 * Idle instances of one thread.
+	 */
+	private static final class Pool {
+		private final Thread thread;
+		// only used by thread
+		private final ArrayDeque<RecyclableDeferredObject<?, ?>> idle = new ArrayDeque<RecyclableDeferredObject<?, ?>>();
+		private final Queue<RecyclableDeferredObject<?, ?>> returned = new ConcurrentLinkedQueue<RecyclableDeferredObject<?, ?>>();
+		private final AtomicInteger returnedCount = new AtomicInteger();
+		
+		Pool(Thread thread) {
+			this.thread = thread;
+		}
+		
+		/**
+		 * Called by the owning thread only.
+		 */
+		RecyclableDeferredObject<?, ?> poll() {
+			RecyclableDeferredObject<?, ?> deferred = idle.pollFirst();
+			if (deferred == null) {
+				deferred = returned.poll();
+				if (deferred != null)
+					returnedCount.decrementAndGet();
+			}
+			return deferred;
+		}
+		
+		void offer(RecyclableDeferredObject<?, ?> deferred) {
+			if (Thread.currentThread() == thread) {
+				if (idle.size() < MAX_POOLED_PER_THREAD)
+					idle.offerFirst(deferred);
+			} else if (returnedCount.incrementAndGet() <= MAX_POOLED_PER_THREAD) {
+				returned.offer(deferred);
+			} else {
+				returnedCount.decrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries to a fraction of the submitted work, so that retries cannot multiply
+ * the load on a dependency that is already failing.
+ * 
+ * Every retried task deposits <code>retryRatio</code> tokens, up to <code>maxRetries</code>,
+ * and every retry withdraws one token.  The budget starts full.  It is lock-free and
+ * meant to be shared, e.g., per manager through
+ * {@link AbstractDeferredManager#setRetryBudget(RetryBudget)}.
+ * 
+ * @author Ray Tsang
+ */
+public class RetryBudget {
+	private static final long SCALE = 1000;
+	
+	private final long deposit;
+	private final long maxBalance;
+	private final AtomicLong balance;
+	
+	/**
+	 * @param retryRatio retries allowed per submitted task, e.g., 0.1 for one retry per ten tasks
+	 * @param maxRetries retries that can be saved up for bursts of failures
+	 */
+	public RetryBudget(double retryRatio, int maxRetries) {
+		if (retryRatio < 0 || maxRetries < 0)
+			throw new IllegalArgumentException("retryRatio and maxRetries must not be negative");
+		this.deposit = (long) (retryRatio * SCALE);
+		this.maxBalance = maxRetries * SCALE;
+		this.balance = new AtomicLong(maxBalance);
+	}
+	
+	public void deposit() {
+		for (;;) {
+			long current = balance.get();
+			long next = Math.min(maxBalance, current + deposit);
+			if (next == current || balance.compareAndSet(current, next))
+				return;
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if a retry may proceed, <code>false</code> if the budget is exhausted
+	 */
+	public boolean tryWithdraw() {
+		for (;;) {
+			long current = balance.get();
+			if (current < SCALE)
+				return false;
+			if (balance.compareAndSet(current, current - SCALE))
+				return true;
+		}
+	}
+	
+	/**
+	 * @return number of retries currently allowed
+	 */
+	public int getAvailableRetries() {
+		return (int) (balance.get() / SCALE);
+	}
+}
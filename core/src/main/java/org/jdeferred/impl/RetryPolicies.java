@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.RetryPolicy;
+
+/**
+ * Built-in {@link RetryPolicy} implementations.
+ * 
+ * <pre>
+ * <code>
+ * dm.retry(callable, RetryPolicies.exponentialBackoff(5, 100, 10000, TimeUnit.MILLISECONDS));
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public final class RetryPolicies {
+	private static final Random random = new Random();
+	
+	private static final RetryPolicy NONE = new RetryPolicy() {
+		@Override
+		public long retryDelay(int retry, Throwable failure) {
+			return -1;
+		}
+	};
+	
+	private RetryPolicies() {
+	}
+	
+	/**
+	 * @return a policy that never retries
+	 */
+	public static RetryPolicy none() {
+		return NONE;
+	}
+	
+	/**
+	 * @param maxRetries how many times to retry at most
+	 * @param delay delay before each retry
+	 */
+	public static RetryPolicy fixedDelay(final int maxRetries, long delay, TimeUnit unit) {
+		final long delayMillis = unit.toMillis(delay);
+		return new RetryPolicy() {
+			@Override
+			public long retryDelay(int retry, Throwable failure) {
+				return retry > maxRetries ? -1 : delayMillis;
+			}
+		};
+	}
+	
+	/**
+	 * Exponential backoff with full jitter: the n-th retry waits a random delay
+	 * between 0 and <code>min(maxDelay, initialDelay * 2^(n-1))</code>, so that
+	 * clients failing together do not retry in lockstep.
+	 * 
+	 * @param maxRetries how many times to retry at most
+	 * @param initialDelay upper bound of the delay before the first retry
+	 * @param maxDelay upper bound of the delay before any retry
+	 */
+	public static RetryPolicy exponentialBackoff(final int maxRetries, long initialDelay, long maxDelay, TimeUnit unit) {
+		final long initialMillis = Math.max(1, unit.toMillis(initialDelay));
+		final long maxMillis = Math.max(initialMillis, unit.toMillis(maxDelay));
+		return new RetryPolicy() {
+			@Override
+			public long retryDelay(int retry, Throwable failure) {
+				if (retry > maxRetries)
+					return -1;
+				
+				long bound = maxMillis;
+				if (retry - 1 < 63 && initialMillis <= maxMillis >> (retry - 1))
+					bound = initialMillis << (retry - 1);
+				return (long) (random.nextDouble() * (bound + 1));
+			}
+		};
+	}
+}
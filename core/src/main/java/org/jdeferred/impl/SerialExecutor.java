@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on a delegate {@link Executor}.
+ * 
+ * Tasks submitted while a drain is scheduled or running are appended to a lock-free
+ * multi-producer single-consumer queue, and run by that same drain; only the first task
+ * after an idle period hands a drain task to the delegate.  Dispatching many callbacks,
+ * e.g., of one promise or chain, thus costs one executor hand-off and thread wake-up
+ * per burst instead of one per callback, and callbacks run in a deterministic order.
+ * 
+ * A task that throws is logged and does not stop the drain.  If the delegate rejects the
+ * drain task, e.g., because it was shut down, the caller runs the drain itself so that
+ * no task is stranded.
+ * 
+ * <pre>
+ * <code>
+ * Executor callbacks = new SerialExecutor(dm.getExecutorService());
+ * promise.progress(callback, ProgressStrategies.latest(callbacks));
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class SerialExecutor implements Executor {
+	private static final Logger log = LoggerFactory.getLogger(SerialExecutor.class);
+	
+	private final Executor delegate;
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicReference<Node> tail;
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+	
+	/**
+	 * Consumer side of the queue, only accessed by the drain.  Points to the last
+	 * consumed node, whose successor is the next task.
+	 */
+	private Node head;
+	
+	public SerialExecutor(Executor delegate) {
+		if (delegate == null)
+			throw new NullPointerException();
+		this.delegate = delegate;
+		this.head = new Node(null);
+		this.tail = new AtomicReference<Node>(head);
+	}
+	
+	public Executor getDelegate() {
+		return delegate;
+	}
+	
+	@Override
+	public void execute(Runnable task) {
+		if (task == null)
+			throw new NullPointerException();
+		
+		Node node = new Node(task);
+		tail.getAndSet(node).next = node;
+		
+		if (wip.getAndIncrement() == 0) {
+			try {
+				delegate.execute(drain);
+			} catch (RejectedExecutionException e) {
+				drain();
+			}
+		}
+	}
+	
+	private void drain() {
+		int missed = 1;
+		for (;;) {
+			Node next;
+			while ((next = head.next) != null) {
+				Runnable task = next.task;
+				next.task = null;
+				head = next;
+				try {
+					task.run();
+				} catch (Throwable t) {
+					log.error("an uncaught exception occured in a task of a SerialExecutor", t);
+				}
+			}
+			missed = wip.addAndGet(-missed);
+			if (missed == 0)
+				return;
+		}
+	}
+	
+	private static final class Node {
+		private Runnable task;
+		private volatile Node next;
+		
+		Node(Runnable task) {
+			this.task = task;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Lazily started timer shared by all managers that were not given their own
+ * {@link ScheduledExecutorService}.  It runs on a single daemon thread and must
+ * only be used to hand work off, never to run it.
+ * 
+ * @author Ray Tsang
+ */
+final class SharedScheduler {
+	private SharedScheduler() {
+	}
+	
+	static ScheduledExecutorService get() {
+		return Holder.INSTANCE;
+	}
+	
+	private static class Holder {
+		static final ScheduledExecutorService INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "jdeferred-scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
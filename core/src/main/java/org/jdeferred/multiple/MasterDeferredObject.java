@@ -111,4 +111,16 @@ public class MasterDeferredObject extends
 			});
 		}
 	}
+
+	public int getNumberOfPromises() {
+		return numberOfPromises;
+	}
+
+	public int getDoneCount() {
+		return doneCount.get();
+	}
+
+	public int getFailCount() {
+		return failCount.get();
+	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.Promise;
+import org.jdeferred.impl.AbstractDeferredTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncLoadingCacheTest extends AbstractDeferredTest {
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private CacheLoader<String, Integer> countingLoader(final CountDownLatch latch) {
+		return new CacheLoader<String, Integer>() {
+			@Override
+			public Integer load(String key) throws Exception {
+				if (latch != null)
+					latch.await();
+				if (key.startsWith("bad"))
+					throw new IllegalArgumentException(key);
+				return loads.incrementAndGet();
+			}
+		};
+	}
+	
+	@Test
+	public void testConcurrentMissesShareLoad() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<String, Integer>(deferredManager, countingLoader(latch), 10);
+		
+		Promise<Integer, ?> first = cache.get("a");
+		Promise<Integer, ?> second = cache.get("a");
+		Assert.assertSame(first, second);
+		
+		latch.countDown();
+		first.waitSafely();
+		Assert.assertEquals(1, loads.get());
+		Assert.assertSame(first, cache.get("a"));
+	}
+	
+	@Test
+	public void testFailedLoadIsEvicted() throws InterruptedException {
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<String, Integer>(deferredManager, countingLoader(null), 10);
+		
+		Promise<Integer, ?> promise = cache.get("bad");
+		promise.waitSafely();
+		Assert.assertTrue(promise.isRejected());
+		Assert.assertNull(cache.getIfPresent("bad"));
+		Assert.assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testExpireAfterWrite() throws InterruptedException {
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<String, Integer>(deferredManager, countingLoader(null), 10);
+		cache.setExpireAfterWrite(50, TimeUnit.MILLISECONDS);
+		
+		cache.get("a").waitSafely();
+		cache.put("b", 42, 0, TimeUnit.MILLISECONDS);
+		Thread.sleep(100);
+		
+		Assert.assertNull(cache.getIfPresent("a"));
+		Assert.assertNotNull(cache.getIfPresent("b"));
+	}
+	
+	@Test
+	public void testRefreshAhead() throws InterruptedException {
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<String, Integer>(deferredManager, countingLoader(null), 10);
+		cache.setRefreshAfterWrite(20, TimeUnit.MILLISECONDS);
+		
+		Promise<Integer, ?> first = cache.get("a");
+		first.waitSafely();
+		Thread.sleep(50);
+		
+		// serves the current value while reloading
+		Assert.assertSame(first, cache.get("a"));
+		for (int i = 0; i < 100 && cache.getIfPresent("a") == first; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, loads.get());
+		Assert.assertNotSame(first, cache.getIfPresent("a"));
+	}
+	
+	@Test
+	public void testEvictsLeastFrequentlyUsed() {
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<String, Integer>(deferredManager, countingLoader(null), 2);
+		cache.put("hot", 1);
+		cache.put("cold", 2);
+		for (int i = 0; i < 5; i++) {
+			cache.getIfPresent("hot");
+		}
+		
+		cache.put("new", 3);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertNotNull(cache.getIfPresent("hot"));
+		Assert.assertNull(cache.getIfPresent("cold"));
+	}
+}
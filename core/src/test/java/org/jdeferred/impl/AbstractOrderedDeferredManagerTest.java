@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Fixture for managers that reorder waiting tasks: a worker held by {@link #blockWorker()}
+ * until {@link #latch} is counted down, and tasks that record the order they ran in.
+ */
+public abstract class AbstractOrderedDeferredManagerTest extends AbstractDeferredTest {
+	protected final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+	protected final CountDownLatch latch = new CountDownLatch(1);
+	
+	protected Callable<String> recording(final String name) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				order.add(name);
+				return name;
+			}
+		};
+	}
+	
+	protected void blockWorker() {
+		deferredManager.when(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				latch.await();
+				return null;
+			}
+		});
+	}
+}
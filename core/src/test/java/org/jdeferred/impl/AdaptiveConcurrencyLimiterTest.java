@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest extends AbstractDeferredTest {
+	private DeferredFutureTask<Integer, Void> task() {
+		return new DeferredFutureTask<Integer, Void>(successCallable(1, 0));
+	}
+	
+	@Test
+	public void testShrinksWhenLatencyRises() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertTrue(limiter.tryAcquire(task()));
+		}
+		limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+		for (int i = 0; i < 10; i++) {
+			limiter.release(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		Assert.assertTrue(limiter.getLimit() < 20);
+	}
+	
+	@Test
+	public void testGrowsWhileLatencyIsStable() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertTrue(limiter.tryAcquire(task()));
+		}
+		for (int i = 0; i < 5; i++) {
+			limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		Assert.assertTrue(limiter.getLimit() > 20);
+	}
+	
+	@Test
+	public void testTasksThatNeverRanDoNotShrinkTheLimit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertTrue(limiter.tryAcquire(task()));
+		}
+		limiter.release(TimeUnit.MILLISECONDS.toNanos(10));
+		int limit = limiter.getLimit();
+		for (int i = 0; i < 10; i++) {
+			limiter.release(-1);
+		}
+		Assert.assertEquals(limit, limiter.getLimit());
+		Assert.assertEquals(9, limiter.getInFlight());
+		
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(limiter.tryAcquire(task()));
+			limiter.release(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		Assert.assertTrue(limiter.getLimit() >= limit);
+	}
+	
+	@Test
+	public void testQueuesOverLimit() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 2);
+		deferredManager.setConcurrencyLimiter(limiter);
+		final CountDownLatch latch = new CountDownLatch(1);
+		
+		List<Promise<Void, Void>> promises = new ArrayList<Promise<Void, Void>>();
+		for (int i = 0; i < 5; i++) {
+			promises.add(deferredManager.when(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					latch.await();
+					return null;
+				}
+			}));
+		}
+		Assert.assertEquals(2, limiter.getInFlight());
+		Assert.assertEquals(3, limiter.getQueuedCount());
+		
+		latch.countDown();
+		for (Promise<Void, Void> promise : promises) {
+			promise.waitSafely();
+			Assert.assertTrue(promise.isResolved());
+		}
+		Assert.assertEquals(0, limiter.getInFlight());
+	}
+	
+	@Test
+	public void testHandsOnSlotsOfExpiredTasksIteratively() throws InterruptedException {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+		deferredManager.setConcurrencyLimiter(limiter);
+		
+		Promise<Integer, Void> first = deferredManager.when(successCallable(1, 300));
+		List<Promise<Integer, Void>> expired = new ArrayList<Promise<Integer, Void>>();
+		for (int i = 0; i < 50000; i++) {
+			DeferredFutureTask<Integer, Void> task = task();
+			task.setDeadline(100, TimeUnit.MILLISECONDS);
+			expired.add(deferredManager.when(task));
+		}
+		
+		first.waitSafely(5000);
+		// slots are handed on in order, so the last task settles last
+		expired.get(expired.size() - 1).waitSafely(5000);
+		for (Promise<Integer, Void> promise : expired) {
+			Assert.assertTrue(promise.isRejected());
+		}
+		Assert.assertEquals(0, limiter.getInFlight());
+		Assert.assertEquals(0, limiter.getQueuedCount());
+	}
+	
+	@Test
+	public void testRejectsWhenQueueIsFull() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+		limiter.setMaxQueued(0);
+		
+		Assert.assertTrue(limiter.tryAcquire(task()));
+		DeferredFutureTask<Integer, Void> rejected = task();
+		Assert.assertFalse(limiter.tryAcquire(rejected));
+		Assert.assertTrue(rejected.promise().isRejected());
+	}
+}
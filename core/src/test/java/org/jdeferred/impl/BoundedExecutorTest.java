@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedExecutorTest extends AbstractDeferredTest {
+	@Override
+	protected void createDeferredManager() {
+		this.deferredManager = new DefaultDeferredManager(1, 1);
+	}
+	
+	@Test
+	public void testOverloadRejectsPromise() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		Callable<Void> blocking = new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				latch.await();
+				return null;
+			}
+		};
+		
+		List<Promise<Void, Void>> accepted = new ArrayList<Promise<Void, Void>>();
+		accepted.add(deferredManager.when(blocking));
+		accepted.add(deferredManager.when(blocking));
+		Promise<Void, Void> overloaded = deferredManager.when(blocking);
+		
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		overloaded.fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		Assert.assertTrue(failure.get() instanceof ExecutorOverloadedException);
+		
+		latch.countDown();
+		for (Promise<Void, Void> promise : accepted) {
+			promise.waitSafely();
+			Assert.assertTrue(promise.isResolved());
+		}
+	}
+	
+	@Test
+	public void testShutdownRejectsPromise() {
+		deferredManager.shutdown();
+		
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		deferredManager.when(successCallable(1, 0)).fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		Assert.assertTrue(failure.get() instanceof RejectedExecutionException);
+		Assert.assertFalse(failure.get() instanceof ExecutorOverloadedException);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BulkheadTest extends AbstractDeferredTest {
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	
+	private Callable<Integer> trackingCallable(final CountDownLatch latch) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				latch.await();
+				running.decrementAndGet();
+				return current;
+			}
+		};
+	}
+	
+	@Test
+	public void testLimitsConcurrencyPerKey() throws InterruptedException {
+		Bulkhead<String> bulkhead = new Bulkhead<String>(deferredManager, 2);
+		CountDownLatch latch = new CountDownLatch(1);
+		
+		List<Promise<Integer, Void>> promises = new ArrayList<Promise<Integer, Void>>();
+		for (int i = 0; i < 5; i++) {
+			promises.add(bulkhead.when("slow", trackingCallable(latch)));
+		}
+		Assert.assertEquals(2, bulkhead.getRunningCount("slow"));
+		Assert.assertEquals(3, bulkhead.getQueuedCount("slow"));
+		
+		// other keys are not held up
+		Promise<Integer, Void> other = bulkhead.when("fast", successCallable(1, 0));
+		other.waitSafely();
+		Assert.assertTrue(other.isResolved());
+		
+		latch.countDown();
+		for (Promise<Integer, Void> promise : promises) {
+			promise.waitSafely();
+			Assert.assertTrue(promise.isResolved());
+		}
+		Assert.assertTrue(maxRunning.get() <= 2);
+		Assert.assertEquals(0, bulkhead.getRunningCount("slow"));
+	}
+	
+	@Test
+	public void testRejectsWhenQueueIsFull() throws InterruptedException {
+		Bulkhead<String> bulkhead = new Bulkhead<String>(deferredManager, 1);
+		bulkhead.setMaxQueuedPerKey(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		
+		Promise<Integer, Void> first = bulkhead.when("key", trackingCallable(latch));
+		Promise<Integer, Void> queued = bulkhead.when("key", trackingCallable(latch));
+		Promise<Integer, Void> rejected = bulkhead.when("key", trackingCallable(latch));
+		Assert.assertTrue(rejected.isRejected());
+		
+		latch.countDown();
+		first.waitSafely();
+		queued.waitSafely();
+		Assert.assertTrue(queued.isResolved());
+	}
+	
+	@Test
+	public void testDrainsFinishedTasksIteratively() throws InterruptedException {
+		Bulkhead<String> bulkhead = new Bulkhead<String>(deferredManager, 1);
+		CountDownLatch latch = new CountDownLatch(1);
+		
+		Promise<Integer, Void> first = bulkhead.when("key", trackingCallable(latch));
+		List<DeferredFutureTask<Integer, Void>> cancelled = new ArrayList<DeferredFutureTask<Integer, Void>>();
+		for (int i = 0; i < 100000; i++) {
+			DeferredFutureTask<Integer, Void> task = new DeferredFutureTask<Integer, Void>(successCallable(i, 0), StartPolicy.AUTO);
+			bulkhead.when("key", task);
+			cancelled.add(task);
+		}
+		// each queued task finishes the moment it is submitted
+		for (DeferredFutureTask<Integer, Void> task : cancelled) {
+			try {
+				task.cancel(false);
+			} catch (CancellationException e) {
+				// thrown by done() of a cancelled task
+			}
+		}
+		
+		latch.countDown();
+		first.waitSafely();
+		for (int i = 0; i < 100 && bulkhead.getRunningCount("key") > 0; i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(0, bulkhead.getRunningCount("key"));
+		Assert.assertEquals(0, bulkhead.getQueuedCount("key"));
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest extends AbstractDeferredTest {
+	private final AtomicInteger calls = new AtomicInteger();
+	
+	private Callable<Integer> countingCallable(final boolean fail, final int waitMs) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				calls.incrementAndGet();
+				if (waitMs > 0)
+					Thread.sleep(waitMs);
+				if (fail)
+					throw new IllegalStateException("down");
+				return 1;
+			}
+		};
+	}
+	
+	private CircuitBreaker openBreaker() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(4, 0.5, 100, TimeUnit.MILLISECONDS);
+		deferredManager.setCircuitBreaker(breaker);
+		for (int i = 0; i < 4; i++) {
+			deferredManager.when(countingCallable(i % 2 == 0, 0)).waitSafely();
+		}
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		calls.set(0);
+		return breaker;
+	}
+	
+	@Test
+	public void testOpenBreakerRejectsWithoutSubmitting() throws InterruptedException {
+		openBreaker();
+		
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		Promise<Integer, Void> promise = deferredManager.when(countingCallable(false, 0));
+		Assert.assertTrue(promise.isRejected());
+		promise.fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		Assert.assertTrue(failure.get() instanceof CircuitBreakerOpenException);
+		Assert.assertEquals(0, calls.get());
+	}
+	
+	@Test
+	public void testHalfOpenTrials() throws InterruptedException {
+		CircuitBreaker breaker = openBreaker();
+		Thread.sleep(150);
+		
+		Promise<Integer, Void> trial = deferredManager.when(countingCallable(false, 50));
+		Promise<Integer, Void> refused = deferredManager.when(countingCallable(false, 0));
+		Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		Assert.assertTrue(refused.isRejected());
+		
+		trial.waitSafely();
+		Assert.assertTrue(trial.isResolved());
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		Assert.assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void testFailedTrialReopens() throws InterruptedException {
+		CircuitBreaker breaker = openBreaker();
+		Thread.sleep(150);
+		
+		deferredManager.when(countingCallable(true, 0)).waitSafely();
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+	
+	@Test
+	public void testTrialThatNeverStartsGivesUpItsSlot() throws InterruptedException {
+		CircuitBreaker breaker = openBreaker();
+		Thread.sleep(150);
+		
+		Promise<Integer, Void> manual = breaker.when(deferredManager,
+				new DeferredFutureTask<Integer, Void>(countingCallable(false, 0), StartPolicy.MANAUL));
+		Assert.assertTrue(manual.isPending());
+		Assert.assertTrue(deferredManager.when(countingCallable(false, 0)).isRejected());
+		
+		Thread.sleep(150);
+		Promise<Integer, Void> trial = deferredManager.when(countingCallable(false, 0));
+		trial.waitSafely();
+		Assert.assertTrue(trial.isResolved());
+		Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+	
+	@Test
+	public void testTaskAdmittedBeforeOpeningIsNoTrial() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2, 1, 100, TimeUnit.MILLISECONDS);
+		deferredManager.setCircuitBreaker(breaker);
+		
+		Promise<Integer, Void> slow = deferredManager.when(countingCallable(false, 250));
+		deferredManager.when(countingCallable(true, 0)).waitSafely();
+		deferredManager.when(countingCallable(true, 0)).waitSafely();
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		
+		Thread.sleep(150);
+		Promise<Integer, Void> trial = deferredManager.when(countingCallable(true, 250));
+		slow.waitSafely();
+		Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		
+		trial.waitSafely();
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+	
+	@Test
+	public void testSlowCallsCountAsFailures() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(2, 1, 1, TimeUnit.SECONDS);
+		breaker.setSlowCallThreshold(10, TimeUnit.MILLISECONDS);
+		
+		breaker.when(deferredManager, countingCallable(false, 50)).waitSafely();
+		breaker.when(deferredManager, countingCallable(false, 50)).waitSafely();
+		Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
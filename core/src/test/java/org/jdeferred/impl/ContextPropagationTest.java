@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+
+import org.jdeferred.ContextPropagator;
+import org.jdeferred.DoneCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContextPropagationTest extends AbstractDeferredTest {
+	private static final ThreadLocal<String> TENANT = new ThreadLocal<String>();
+	
+	@Before
+	public void installPropagator() {
+		ContextPropagation.setPropagator(new ContextPropagator() {
+			@Override
+			public Object capture() {
+				return TENANT.get();
+			}
+			
+			@Override
+			public Object restore(Object snapshot) {
+				String previous = TENANT.get();
+				TENANT.set((String) snapshot);
+				return previous;
+			}
+		});
+	}
+	
+	@After
+	public void removePropagator() {
+		ContextPropagation.setPropagator(null);
+		TENANT.remove();
+	}
+	
+	@Test
+	public void testTaskAndCallbackContext() {
+		final ValueHolder<String> taskTenant = new ValueHolder<String>();
+		final ValueHolder<String> callbackTenant = new ValueHolder<String>();
+		final ValueHolder<String> otherTenant = new ValueHolder<String>();
+		
+		TENANT.set("acme");
+		DeferredObject<String, Void> deferred = new DeferredObject<String, Void>();
+		deferred.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				callbackTenant.set(TENANT.get());
+			}
+		});
+		TENANT.set("initech");
+		deferred.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				otherTenant.set(TENANT.get());
+			}
+		});
+		
+		TENANT.set("globex");
+		deferredManager.when(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				taskTenant.set(TENANT.get());
+				return null;
+			}
+		});
+		TENANT.remove();
+		
+		deferred.resolve("done");
+		waitForCompletion();
+		
+		taskTenant.assertEquals("globex");
+		callbackTenant.assertEquals("acme");
+		otherTenant.assertEquals("initech");
+		Assert.assertNull(TENANT.get());
+	}
+}
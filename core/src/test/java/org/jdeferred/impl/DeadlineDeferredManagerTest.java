@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeadlineDeferredManagerTest extends AbstractOrderedDeferredManagerTest {
+	@Override
+	protected void createDeferredManager() {
+		this.deferredManager = new DeadlineDeferredManager(1);
+	}
+	
+	private DeferredFutureTask<String, Void> recordingTask(String name, long deadlineMs) {
+		DeferredFutureTask<String, Void> task = new DeferredFutureTask<String, Void>(recording(name));
+		if (deadlineMs >= 0)
+			task.setDeadline(deadlineMs, TimeUnit.MILLISECONDS);
+		return task;
+	}
+	
+	@Test
+	public void testEarliestDeadlineFirst() {
+		blockWorker();
+		deferredManager.when(recordingTask("none", -1));
+		deferredManager.when(recordingTask("late", 20000));
+		deferredManager.when(recordingTask("early", 10000));
+		
+		latch.countDown();
+		waitForCompletion();
+		Assert.assertEquals(3, order.size());
+		Assert.assertEquals("early", order.get(0));
+		Assert.assertEquals("late", order.get(1));
+		Assert.assertEquals("none", order.get(2));
+	}
+	
+	@Test
+	public void testExpiredTaskIsDropped() throws InterruptedException {
+		blockWorker();
+		Promise<String, Void> expired = deferredManager.when(recordingTask("expired", 20));
+		Promise<String, Void> alive = deferredManager.when(recordingTask("alive", 10000));
+		Thread.sleep(50);
+		
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		expired.fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		latch.countDown();
+		expired.waitSafely();
+		alive.waitSafely();
+		
+		Assert.assertTrue(failure.get() instanceof TimeoutException);
+		Assert.assertTrue(alive.isResolved());
+		Assert.assertEquals(Collections.singletonList("alive"), order);
+	}
+	
+	@Test
+	public void testPastDeadlineIsRejectedWithoutSubmitting() {
+		DeferredFutureTask<String, Void> task = recordingTask("expired", 0);
+		Promise<String, Void> promise = deferredManager.when(task);
+		Assert.assertTrue(promise.isRejected());
+		Assert.assertTrue(order.isEmpty());
+	}
+}
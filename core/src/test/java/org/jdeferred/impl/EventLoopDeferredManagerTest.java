@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventLoopDeferredManagerTest {
+	private final EventLoopDeferredManager dm = new EventLoopDeferredManager(2);
+	
+	@After
+	public void tearDown() throws InterruptedException {
+		dm.shutdown();
+		Assert.assertTrue(dm.awaitTermination(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testTasksSubmittedFromALoopStayOnIt() throws InterruptedException {
+		final AtomicReference<Thread> outer = new AtomicReference<Thread>();
+		final AtomicReference<Thread> inner = new AtomicReference<Thread>();
+		final CountDownLatch done = new CountDownLatch(1);
+		dm.when(new Runnable() {
+			@Override
+			public void run() {
+				outer.set(Thread.currentThread());
+				dm.when(new Runnable() {
+					@Override
+					public void run() {
+						inner.set(Thread.currentThread());
+						done.countDown();
+					}
+				});
+			}
+		});
+		
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertSame(outer.get(), inner.get());
+	}
+	
+	@Test
+	public void testConfinedDeferredRunsCallbacksOnItsLoop() throws InterruptedException {
+		final AtomicReference<Integer> result = new AtomicReference<Integer>();
+		final AtomicReference<Thread> callbackThread = new AtomicReference<Thread>();
+		final AtomicReference<Thread> loopThread = new AtomicReference<Thread>();
+		final EventLoopDeferredObject<Integer, Void> deferred = dm.deferred();
+		
+		deferred.getEventLoop().execute(new Runnable() {
+			@Override
+			public void run() {
+				loopThread.set(Thread.currentThread());
+			}
+		});
+		deferred.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer value) {
+				callbackThread.set(Thread.currentThread());
+				result.set(value);
+			}
+		});
+		// completed from a foreign thread, handed over to the loop
+		deferred.resolve(100);
+		
+		deferred.waitSafely(5000);
+		Assert.assertTrue(deferred.isResolved());
+		Assert.assertEquals(Integer.valueOf(100), result.get());
+		Assert.assertSame(loopThread.get(), callbackThread.get());
+	}
+	
+	@Test
+	public void testCompletionOnTheLoopIsSynchronous() throws Exception {
+		final AtomicReference<State> stateInCallback = new AtomicReference<State>();
+		Promise<String, Void> promise = dm.when(new Callable<String>() {
+			@Override
+			public String call() {
+				EventLoopDeferredObject<String, Void> deferred = dm.deferred();
+				Assert.assertTrue(deferred.getEventLoop().inEventLoop());
+				
+				deferred.always(new AlwaysCallback<String>() {
+					@Override
+					public void onAlways(State state, String resolved, Throwable rejected) {
+						stateInCallback.set(state);
+					}
+				});
+				deferred.reject(new IllegalArgumentException());
+				Assert.assertEquals(State.REJECTED, stateInCallback.get());
+				
+				try {
+					deferred.reject(new IllegalArgumentException());
+					Assert.fail("rejected twice");
+				} catch (IllegalStateException e) {
+				}
+				return "done";
+			}
+		});
+		
+		promise.waitSafely(5000);
+		Assert.assertTrue(promise.isResolved());
+	}
+	
+	@Test
+	public void testWaitingOnTheLoopIsRefused() throws Exception {
+		Promise<Boolean, Void> promise = dm.when(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws InterruptedException {
+				EventLoopDeferredObject<String, Void> deferred = dm.deferred();
+				try {
+					deferred.waitSafely();
+					return false;
+				} catch (IllegalStateException e) {
+					return true;
+				}
+			}
+		});
+		
+		final AtomicReference<Boolean> refused = new AtomicReference<Boolean>();
+		promise.done(new DoneCallback<Boolean>() {
+			@Override
+			public void onDone(Boolean result) {
+				refused.set(result);
+			}
+		});
+		promise.waitSafely(5000);
+		Assert.assertEquals(Boolean.TRUE, refused.get());
+	}
+	
+	@Test
+	public void testTasksAfterShutdownAreRejected() throws InterruptedException {
+		dm.shutdown();
+		Assert.assertTrue(dm.awaitTermination(5, TimeUnit.SECONDS));
+		
+		Promise<Void, Void> promise = dm.when(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		Assert.assertTrue(promise.isRejected());
+	}
+	
+	@Test
+	public void testTaskPromisesAreConfinedToTheLoopRunningTheTask() throws InterruptedException {
+		final AtomicReference<EventLoop> ranOn = new AtomicReference<EventLoop>();
+		final AtomicReference<EventLoop> doneOn = new AtomicReference<EventLoop>();
+		final CountDownLatch done = new CountDownLatch(1);
+		Promise<Integer, Void> promise = dm.when(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				ranOn.set(EventLoop.current());
+				return 1;
+			}
+		});
+		Assert.assertTrue(promise instanceof EventLoopDeferredObject);
+		promise.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				doneOn.set(EventLoop.current());
+				done.countDown();
+			}
+		});
+		
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		EventLoop loop = ((EventLoopDeferredObject<Integer, Void>) promise).getEventLoop();
+		Assert.assertSame(loop, ranOn.get());
+		Assert.assertSame(loop, doneOn.get());
+	}
+	
+	@Test
+	public void testConfinedDeferredLeavesSharedStateUninitialized() {
+		EventLoopDeferredObject<String, Void> deferred = dm.deferred();
+		Assert.assertNull(deferred.state);
+		Assert.assertNull(deferred.doneCallbacks);
+		Assert.assertNull(deferred.alwaysCallbacks);
+		Assert.assertEquals(State.PENDING, deferred.state());
+	}
+}
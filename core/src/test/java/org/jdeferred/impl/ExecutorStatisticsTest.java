@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExecutorStatisticsTest extends AbstractDeferredTest {
+	@Override
+	protected void createDeferredManager() {
+		this.deferredManager = new DefaultDeferredManager(Executors.newSingleThreadExecutor());
+		this.deferredManager.setCollectStatistics(true);
+	}
+	
+	@Test
+	public void testGauges() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Promise<Void, Void> blocking = deferredManager.when(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				started.countDown();
+				latch.await();
+				return null;
+			}
+		});
+		Promise<Integer, Void> waiting = deferredManager.when(successCallable(1, 0));
+		started.await();
+		Thread.sleep(20);
+		
+		ExecutorStatistics statistics = deferredManager.getStatistics();
+		Assert.assertEquals(1, statistics.getActiveCount());
+		Assert.assertEquals(1, statistics.getQueuedCount());
+		
+		latch.countDown();
+		blocking.waitSafely();
+		waiting.waitSafely();
+		
+		Assert.assertEquals(0, statistics.getActiveCount());
+		Assert.assertEquals(0, statistics.getQueuedCount());
+		Assert.assertEquals(2, statistics.getCompletedCount());
+		Assert.assertTrue(statistics.getTotalQueueTime(TimeUnit.MILLISECONDS) >= 20);
+		Assert.assertTrue(statistics.getTotalRunTime(TimeUnit.MILLISECONDS) >= 20);
+	}
+	
+	@Test
+	public void testDroppedTask() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		deferredManager.when(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				latch.await();
+				return null;
+			}
+		});
+		DeferredFutureTask<Integer, Void> task = new DeferredFutureTask<Integer, Void>(successCallable(1, 0));
+		task.setDeadline(10, TimeUnit.MILLISECONDS);
+		Promise<Integer, Void> expired = deferredManager.when(task);
+		Thread.sleep(30);
+		
+		latch.countDown();
+		expired.waitSafely();
+		Assert.assertTrue(expired.isRejected());
+		Assert.assertEquals(1, deferredManager.getStatistics().getDroppedCount());
+		Assert.assertEquals(0, deferredManager.getStatistics().getQueuedCount());
+	}
+	
+	@Test
+	public void testTaskCancelledWhileQueued() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		Promise<Void, Void> blocking = deferredManager.when(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				latch.await();
+				return null;
+			}
+		});
+		DeferredFutureTask<Integer, Void> task = new DeferredFutureTask<Integer, Void>(successCallable(1, 0));
+		Promise<Integer, Void> cancelled = deferredManager.when(task);
+		try {
+			task.cancel(false);
+		} catch (CancellationException e) {
+			// rethrown by done() of a cancelled task
+		} finally {
+			latch.countDown();
+		}
+		
+		blocking.waitSafely();
+		cancelled.waitSafely();
+		// let the executor pick the cancelled task from its queue
+		deferredManager.when(successCallable(2, 0)).waitSafely();
+		
+		ExecutorStatistics statistics = deferredManager.getStatistics();
+		Assert.assertTrue(cancelled.isRejected());
+		Assert.assertEquals(1, statistics.getDroppedCount());
+		Assert.assertEquals(0, statistics.getQueuedCount());
+		Assert.assertEquals(0, statistics.getActiveCount());
+		Assert.assertEquals(2, statistics.getCompletedCount());
+	}
+}
@@ -18,12 +18,14 @@ package org.jdeferred.impl;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jdeferred.AlwaysCallback;
 import org.jdeferred.DeferredRunnable;
 import org.jdeferred.DoneCallback;
 import org.jdeferred.DoneFilter;
 import org.jdeferred.FailCallback;
 import org.jdeferred.FailFilter;
 import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -160,4 +162,70 @@ public class FilteredPromiseTest extends AbstractDeferredTest {
 		waitForCompletion();
 		holder.assertEquals("TEST");
 	}
+	
+	@Test
+	public void testRegistersOneListenerWithUpstream() {
+		final AtomicInteger registrations = new AtomicInteger();
+		DeferredObject<Integer, Void> upstream = new DeferredObject<Integer, Void>() {
+			@Override
+			public Promise<Integer, Void> done(DoneCallback<Integer> callback) {
+				registrations.incrementAndGet();
+				return super.done(callback);
+			}
+			
+			@Override
+			public Promise<Integer, Void> fail(FailCallback callback) {
+				registrations.incrementAndGet();
+				return super.fail(callback);
+			}
+			
+			@Override
+			public Promise<Integer, Void> always(AlwaysCallback<Integer> callback) {
+				registrations.incrementAndGet();
+				return super.always(callback);
+			}
+		};
+		
+		final ValueHolder<String> holder = new ValueHolder<String>();
+		upstream.then(new DoneFilter<Integer, String>() {
+			@Override
+			public String filterDone(Integer result) {
+				return "TEST-" + result;
+			}
+		}).done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				holder.set(result);
+			}
+		});
+		
+		Assert.assertEquals(1, registrations.get());
+		upstream.resolve(1);
+		holder.assertEquals("TEST-1");
+	}
+	
+	@Test
+	public void testProgressIsWiredOnDemand() {
+		DeferredObject<Integer, Integer> upstream = new DeferredObject<Integer, Integer>();
+		Promise<Integer, Integer> first = upstream.then(new FilteredPromise.NoOpDoneFilter<Integer>());
+		Promise<Integer, Integer> second = first.then(new FilteredPromise.NoOpDoneFilter<Integer>());
+		Assert.assertTrue(upstream.progressCallbacks.isEmpty());
+		
+		final AtomicInteger progress = new AtomicInteger();
+		second.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer value) {
+				progress.addAndGet(value);
+			}
+		});
+		Assert.assertEquals(1, upstream.progressCallbacks.size());
+		
+		upstream.notify(10);
+		Assert.assertEquals(10, progress.get());
+		
+		((FilteredPromise<?, ?, ?, ?>) first).cancel();
+		Assert.assertTrue(upstream.progressCallbacks.isEmpty());
+		upstream.notify(10);
+		Assert.assertEquals(10, progress.get());
+	}
 }
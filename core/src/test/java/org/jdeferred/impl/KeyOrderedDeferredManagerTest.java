@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyOrderedDeferredManagerTest extends AbstractDeferredTest {
+	@Override
+	protected void createDeferredManager() {
+		this.deferredManager = new KeyOrderedDeferredManager(Executors.newFixedThreadPool(4));
+	}
+	
+	private KeyOrderedDeferredManager manager() {
+		return (KeyOrderedDeferredManager) deferredManager;
+	}
+	
+	@Test
+	public void testSameKeyRunsInOrder() {
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		
+		for (int i = 0; i < 50; i++) {
+			final int n = i;
+			manager().whenOrdered("account", new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					if (running.incrementAndGet() > 1)
+						overlaps.incrementAndGet();
+					order.add(n);
+					Thread.sleep(1);
+					running.decrementAndGet();
+					return n;
+				}
+			});
+		}
+		
+		waitForCompletion();
+		Assert.assertEquals(0, overlaps.get());
+		Assert.assertEquals(50, order.size());
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(Integer.valueOf(i), order.get(i));
+		}
+		Assert.assertEquals(0, manager().getActiveKeyCount());
+	}
+	
+	@Test
+	public void testDifferentKeysRunInParallel() throws InterruptedException {
+		final CountDownLatch bothRunning = new CountDownLatch(2);
+		Callable<Boolean> callable = new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				bothRunning.countDown();
+				return bothRunning.await(5, TimeUnit.SECONDS);
+			}
+		};
+		
+		Promise<Boolean, Void> first = manager().whenOrdered("a", callable);
+		Promise<Boolean, Void> second = manager().whenOrdered("b", callable);
+		first.waitSafely();
+		second.waitSafely();
+		Assert.assertTrue(first.isResolved());
+		Assert.assertTrue(second.isResolved());
+		Assert.assertEquals(0, bothRunning.getCount());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyStartPolicyTest extends AbstractDeferredTest {
+	private DeferredCallable<Integer, Void> countingCallable(final AtomicInteger runs) {
+		return new DeferredCallable<Integer, Void>(StartPolicy.LAZY) {
+			@Override
+			public Integer call() {
+				return runs.incrementAndGet();
+			}
+		};
+	}
+	
+	@Test
+	public void testStartsWhenFirstCallbackIsRegistered() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		Promise<Integer, Void> promise = deferredManager.when(countingCallable(runs));
+		
+		Thread.sleep(100);
+		Assert.assertTrue(promise.isPending());
+		Assert.assertEquals(0, runs.get());
+		
+		final ValueHolder<Integer> holder = new ValueHolder<Integer>();
+		promise.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				holder.set(result);
+			}
+		}).done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+			}
+		});
+		
+		waitForCompletion();
+		holder.assertEquals(1);
+		Assert.assertEquals(1, runs.get());
+	}
+	
+	@Test
+	public void testStartsWhenWaitedFor() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		Promise<Integer, Void> promise = deferredManager.when(countingCallable(runs));
+		
+		promise.waitSafely(5000);
+		Assert.assertTrue(promise.isResolved());
+		Assert.assertEquals(1, runs.get());
+	}
+	
+	@Test
+	public void testNeverRunsIfNeverObserved() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		Promise<Integer, Void> promise = deferredManager.when(countingCallable(runs));
+		
+		waitForCompletion();
+		Assert.assertFalse(((LazyPromise<Integer, Void>) promise).isStarted());
+		Assert.assertEquals(0, runs.get());
+	}
+}
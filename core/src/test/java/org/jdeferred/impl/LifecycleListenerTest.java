@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LifecycleListenerTest extends AbstractDeferredTest {
+	private static class RecordingListener extends LifecycleListenerAdapter {
+		final List<String> events = new CopyOnWriteArrayList<String>();
+		volatile long queueNanos = -1;
+		volatile long runNanos = -1;
+		
+		@Override
+		public void onPromiseCreated(Promise<?, ?> promise) {
+			events.add("created");
+		}
+		
+		@Override
+		public void onPromiseResolved(Promise<?, ?> promise, Object resolved) {
+			events.add("resolved");
+		}
+		
+		@Override
+		public void onPromiseRejected(Promise<?, ?> promise, Throwable rejected) {
+			events.add("rejected");
+		}
+		
+		@Override
+		public void onCallbackStarted(Promise<?, ?> promise, Object callback) {
+			events.add("callbackStarted");
+		}
+		
+		@Override
+		public void onCallbackFinished(Promise<?, ?> promise, Object callback, Throwable error) {
+			events.add(error == null ? "callbackFinished" : "callbackFailed");
+		}
+		
+		@Override
+		public void onTaskQueued(DeferredFutureTask<?, ?> task) {
+			events.add("queued");
+		}
+		
+		@Override
+		public void onTaskStarted(DeferredFutureTask<?, ?> task) {
+			events.add("started");
+		}
+		
+		@Override
+		public void onTaskFinished(DeferredFutureTask<?, ?> task) {
+			events.add("finished");
+			queueNanos = task.getStartedTime() - task.getQueuedTime();
+			runNanos = task.getFinishedTime() - task.getStartedTime();
+		}
+	}
+	
+	@After
+	public void resetDefault() {
+		AbstractPromise.setDefaultLifecycleListener(null);
+	}
+	
+	@Test
+	public void testManagerListener() {
+		RecordingListener listener = new RecordingListener();
+		deferredManager.setLifecycleListener(listener);
+		
+		deferredManager.when(successCallable(100, 50)).done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				throw new RuntimeException("this exception is expected");
+			}
+		});
+		
+		waitForCompletion();
+		Assert.assertEquals("[created, queued, started, finished, resolved, callbackStarted, callbackFailed]",
+				listener.events.toString());
+		Assert.assertTrue(listener.queueNanos >= 0);
+		Assert.assertTrue(listener.runNanos >= 50 * 1000000L);
+	}
+	
+	@Test
+	public void testDefaultListener() {
+		RecordingListener listener = new RecordingListener();
+		AbstractPromise.setDefaultLifecycleListener(listener);
+		
+		DeferredObject<Integer, Void> deferred = new DeferredObject<Integer, Void>();
+		deferred.reject(new RuntimeException("oops"));
+		
+		Assert.assertEquals("[created, rejected]", listener.events.toString());
+	}
+	
+	@Test
+	public void testDisabledByDefault() {
+		Assert.assertNull(new DeferredObject<Integer, Void>().getLifecycleListener());
+	}
+}
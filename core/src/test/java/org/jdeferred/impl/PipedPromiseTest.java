@@ -154,5 +154,24 @@ public class PipedPromiseTest extends AbstractDeferredTest {
 		postRewireValue.assertEquals(null);
 		failed.assertEquals("less than 100");
 	}
-
+	
+	@Test
+	public void testProgressPipeRejectsWithoutProgressCallbacks() {
+		final ValueHolder<String> failed = new ValueHolder<String>();
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		deferred.promise().then(null, null, new ProgressPipe<Integer, Integer, Integer>() {
+			@Override
+			public Promise<Integer, Integer> pipeProgress(Integer progress) {
+				return rejectedPromise(new RuntimeException("aborted at " + progress));
+			}
+		}).fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failed.set(result.getMessage());
+			}
+		});
+		
+		deferred.notify(50);
+		failed.assertEquals("aborted at 50");
+	}
 }
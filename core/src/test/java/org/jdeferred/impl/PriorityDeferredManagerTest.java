@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PriorityDeferredManagerTest extends AbstractOrderedDeferredManagerTest {
+	@Override
+	protected void createDeferredManager() {
+		this.deferredManager = new PriorityDeferredManager(1, 10, TimeUnit.MILLISECONDS);
+	}
+	
+	private DeferredCallable<String, Void> recordingCallable(String name, int priority) {
+		final Callable<String> recording = recording(name);
+		return new DeferredCallable<String, Void>(priority) {
+			@Override
+			public String call() throws Exception {
+				return recording.call();
+			}
+		};
+	}
+	
+	@Test
+	public void testSerialExecutorWhileSaturated() throws InterruptedException {
+		blockWorker();
+		deferredManager.when(recordingCallable("queued", 0));
+		
+		final CountDownLatch ran = new CountDownLatch(2);
+		SerialExecutor serial = deferredManager.newSerialExecutor();
+		try {
+			for (int i = 0; i < 2; i++) {
+				serial.execute(new Runnable() {
+					@Override
+					public void run() {
+						ran.countDown();
+					}
+				});
+			}
+		} finally {
+			latch.countDown();
+		}
+		
+		Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testHigherPriorityRunsFirst() throws InterruptedException {
+		blockWorker();
+		deferredManager.when(recordingCallable("low", -5));
+		deferredManager.when(recordingCallable("default", DeferredFutureTask.DEFAULT_PRIORITY));
+		Promise<String, Void> last = deferredManager.when(recordingCallable("high", 5));
+		
+		latch.countDown();
+		waitForCompletion();
+		Assert.assertTrue(last.isResolved());
+		Assert.assertEquals(3, order.size());
+		Assert.assertEquals("high", order.get(0));
+		Assert.assertEquals("default", order.get(1));
+		Assert.assertEquals("low", order.get(2));
+	}
+	
+	@Test
+	public void testWaitingTasksAge() throws InterruptedException {
+		blockWorker();
+		deferredManager.when(recordingCallable("old", -1));
+		Thread.sleep(50);
+		deferredManager.when(recordingCallable("new", 2));
+		
+		latch.countDown();
+		waitForCompletion();
+		Assert.assertEquals("old", order.get(0));
+		Assert.assertEquals("new", order.get(1));
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.flow.Subscriber;
+import org.jdeferred.flow.Subscription;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProgressPublisherTest extends AbstractDeferredTest {
+	private static class RecordingSubscriber<T> implements Subscriber<T> {
+		final List<T> items = new ArrayList<T>();
+		final AtomicInteger completed = new AtomicInteger();
+		Throwable error;
+		Subscription subscription;
+		
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+		
+		@Override
+		public void onNext(T item) {
+			items.add(item);
+		}
+		
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+		
+		@Override
+		public void onComplete() {
+			completed.incrementAndGet();
+		}
+	}
+	
+	@Test
+	public void testDeliversOnlyRequested() {
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		deferred.progressPublisher().subscribe(subscriber);
+		
+		deferred.notify(1);
+		deferred.notify(2);
+		deferred.notify(3);
+		Assert.assertTrue(subscriber.items.isEmpty());
+		
+		subscriber.subscription.request(2);
+		Assert.assertEquals(2, subscriber.items.size());
+		Assert.assertEquals(0, deferred.progressDemand());
+		
+		deferred.resolve(100);
+		Assert.assertEquals(0, subscriber.completed.get());
+		
+		subscriber.subscription.request(1);
+		Assert.assertEquals(3, subscriber.items.size());
+		Assert.assertEquals(1, subscriber.completed.get());
+	}
+	
+	@Test
+	public void testRejectCutsAhead() {
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		deferred.progressPublisher().subscribe(subscriber);
+		
+		deferred.notify(1);
+		deferred.reject(new RuntimeException("oops"));
+		
+		Assert.assertTrue(subscriber.items.isEmpty());
+		Assert.assertEquals("oops", subscriber.error.getMessage());
+	}
+	
+	@Test
+	public void testOverflowTerminatesSubscription() {
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		new ProgressPublisher<Integer, Integer>(deferred, 2).subscribe(subscriber);
+		
+		deferred.notify(1);
+		deferred.notify(2);
+		deferred.notify(3);
+		
+		Assert.assertTrue(subscriber.error instanceof IllegalStateException);
+	}
+	
+	@Test
+	public void testThrowingSubscriberIsCancelled() {
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		final RuntimeException failure = new RuntimeException("onNext");
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>() {
+			@Override
+			public void onNext(Integer item) {
+				super.onNext(item);
+				throw failure;
+			}
+		};
+		deferred.progressPublisher().subscribe(subscriber);
+		subscriber.subscription.request(10);
+		
+		deferred.notify(1);
+		deferred.notify(2);
+		Assert.assertEquals(1, subscriber.items.size());
+		Assert.assertSame(failure, subscriber.error);
+		// the subscription is gone, so there is nobody left to slow down for
+		Assert.assertEquals(Long.MAX_VALUE, deferred.progressDemand());
+		
+		deferred.resolve(100);
+		Assert.assertEquals(0, subscriber.completed.get());
+	}
+	
+	@Test
+	public void testSubscribeAfterResolve() {
+		DeferredObject<Integer, Integer> deferred = new DeferredObject<Integer, Integer>();
+		deferred.resolve(100);
+		
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		deferred.progressPublisher().subscribe(subscriber);
+		Assert.assertEquals(1, subscriber.completed.get());
+	}
+	
+	@Test
+	public void testCallableSeesDemand() throws Exception {
+		final AtomicInteger skipped = new AtomicInteger();
+		DeferredCallable<Void, Integer> task = new DeferredCallable<Void, Integer>(StartPolicy.MANAUL) {
+			@Override
+			public Void call() throws Exception {
+				for (int i = 0; i < 10; i++) {
+					if (progressDemand() > 0)
+						notify(i);
+					else
+						skipped.incrementAndGet();
+				}
+				return null;
+			}
+		};
+		
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+		deferredManager.when(task).progressPublisher().subscribe(subscriber);
+		subscriber.subscription.request(4);
+		
+		task.call();
+		
+		Assert.assertEquals(4, subscriber.items.size());
+		Assert.assertEquals(6, skipped.get());
+	}
+}
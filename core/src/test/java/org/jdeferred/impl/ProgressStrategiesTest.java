@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.ProgressCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProgressStrategiesTest extends AbstractDeferredTest {
+	@Test
+	public void testLatestConflatesWhileBusy() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		DeferredObject<Void, Integer> deferred = new DeferredObject<Void, Integer>();
+		
+		deferred.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer progress) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				received.add(progress);
+			}
+		}, ProgressStrategies.latest(deferredManager.getExecutorService()));
+		
+		for (int i = 1; i <= 100; i++) {
+			deferred.notify(i);
+		}
+		release.countDown();
+		
+		waitForCompletion();
+		Assert.assertTrue(received.size() < 100);
+		Assert.assertEquals((Integer) 100, received.get(received.size() - 1));
+	}
+	
+	@Test
+	public void testDropOldestKeepsNewest() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		DeferredObject<Void, Integer> deferred = new DeferredObject<Void, Integer>();
+		
+		deferred.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer progress) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				received.add(progress);
+			}
+		}, ProgressStrategies.dropOldest(3, deferredManager.getExecutorService()));
+		
+		for (int i = 1; i <= 100; i++) {
+			deferred.notify(i);
+		}
+		release.countDown();
+		
+		waitForCompletion();
+		Assert.assertTrue(received.size() <= 4);
+		Assert.assertEquals((Integer) 100, received.get(received.size() - 1));
+	}
+	
+	@Test
+	public void testSampleFlushesLastValue() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		DeferredObject<Void, Integer> deferred = new DeferredObject<Void, Integer>();
+		
+		deferred.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer progress) {
+				received.add(progress);
+			}
+		}, ProgressStrategies.sample(1, TimeUnit.HOURS, scheduler));
+		
+		for (int i = 1; i <= 100; i++) {
+			deferred.notify(i);
+		}
+		deferred.resolve(null);
+		
+		scheduler.shutdown();
+		scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		Assert.assertEquals(1, received.size());
+		Assert.assertEquals((Integer) 100, received.get(0));
+	}
+	
+	@Test
+	public void testLatestDeliversInlineWhenExecutorRejects() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		DeferredObject<Void, Integer> deferred = new DeferredObject<Void, Integer>();
+		
+		deferred.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer progress) {
+				received.add(progress);
+			}
+		}, ProgressStrategies.latest(executor));
+		
+		deferred.notify(1);
+		deferred.notify(2);
+		Assert.assertEquals(Arrays.asList(1, 2), received);
+	}
+	
+	@Test
+	public void testSampleStopsWhenCancelled() throws InterruptedException {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+		final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		DeferredObject<Void, Integer> deferred = new DeferredObject<Void, Integer>();
+		
+		deferred.progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer progress) {
+				received.add(progress);
+			}
+		}, ProgressStrategies.sample(10, TimeUnit.MILLISECONDS, scheduler));
+		
+		deferred.notify(1);
+		Assert.assertEquals(1, scheduler.getQueue().size());
+		deferred.cancel();
+		
+		// a timer that cancelled itself is not scheduled again
+		Thread.sleep(100);
+		Assert.assertTrue(scheduler.getQueue().isEmpty());
+		Assert.assertTrue(received.isEmpty());
+		scheduler.shutdown();
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.List;
+
+import org.jdeferred.DeferredFutureTask;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PromiseLeakDetectorTest extends AbstractDeferredTest {
+	@After
+	public void disable() {
+		PromiseLeakDetector.setSamplingInterval(0);
+	}
+	
+	@Test
+	public void testReportsPendingGarbage() throws InterruptedException {
+		PromiseLeakDetector.reportLeaks();
+		PromiseLeakDetector.setSamplingInterval(1);
+		
+		new DeferredObject<Integer, Void>();
+		new DeferredObject<Integer, Void>().resolve(1);
+		
+		int leaks = 0;
+		for (int i = 0; i < 50 && leaks == 0; i++) {
+			System.gc();
+			Thread.sleep(10);
+			leaks += PromiseLeakDetector.reportLeaks();
+		}
+		Assert.assertEquals(1, leaks);
+	}
+	
+	@Test
+	public void testInFlightTasksOldestFirst() throws InterruptedException {
+		deferredManager.setTrackInFlightTasks(true);
+		
+		deferredManager.when(successCallable(1, 500));
+		Thread.sleep(10);
+		deferredManager.when(successCallable(2, 500));
+		deferredManager.when(successCallable(3, 0)).waitSafely();
+		
+		List<DefaultDeferredManager.InFlightTask> tasks = deferredManager.getInFlightTasks();
+		Assert.assertEquals(2, tasks.size());
+		Assert.assertTrue(tasks.get(0).getSubmittedTime() < tasks.get(1).getSubmittedTime());
+		
+		waitForCompletion();
+		Assert.assertTrue(deferredManager.getInFlightTasks().isEmpty());
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest extends AbstractDeferredTest {
+	@Test
+	public void testRejectsOverBurst() {
+		deferredManager.setRateLimiter(new RateLimiter(1, 3));
+		
+		List<Promise<Integer, Void>> promises = new ArrayList<Promise<Integer, Void>>();
+		for (int i = 0; i < 5; i++) {
+			promises.add(deferredManager.when(successCallable(i, 0)));
+		}
+		
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		promises.get(3).fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		Assert.assertTrue(failure.get() instanceof RateLimitExceededException);
+		Assert.assertTrue(promises.get(4).isRejected());
+		Assert.assertFalse(promises.get(2).isRejected());
+	}
+	
+	@Test
+	public void testDelaysWithinMaxDelay() throws InterruptedException {
+		RateLimiter limiter = new RateLimiter(20, 1);
+		limiter.setMaxDelay(1, TimeUnit.SECONDS);
+		deferredManager.setRateLimiter(limiter);
+		
+		long start = System.nanoTime();
+		List<Promise<Integer, Void>> promises = new ArrayList<Promise<Integer, Void>>();
+		for (int i = 0; i < 5; i++) {
+			promises.add(deferredManager.when(successCallable(i, 0)));
+		}
+		for (Promise<Integer, Void> promise : promises) {
+			promise.waitSafely();
+			Assert.assertTrue(promise.isResolved());
+		}
+		
+		// 4 tasks after the first one, 50ms apart
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+	}
+	
+	@Test
+	public void testReserve() {
+		RateLimiter limiter = new RateLimiter(10, 2);
+		limiter.setMaxDelay(150, TimeUnit.MILLISECONDS);
+		
+		Assert.assertEquals(0, limiter.reserve());
+		Assert.assertEquals(0, limiter.reserve());
+		Assert.assertTrue(limiter.reserve() > TimeUnit.MILLISECONDS.toNanos(50));
+		// the next permit is 200ms away
+		Assert.assertEquals(-1, limiter.reserve());
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise.State;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecyclableDeferredObjectTest {
+	@Test
+	public void testRecycledAfterCallbacksRan() {
+		final AtomicReference<String> result = new AtomicReference<String>();
+		final AtomicInteger always = new AtomicInteger();
+		RecyclableDeferredObject<String, Void> deferred = RecyclableDeferredObject.obtain();
+		int generation = deferred.getGeneration();
+		deferred.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String value) {
+				result.set(value);
+			}
+		}).always(new AlwaysCallback<String>() {
+			@Override
+			public void onAlways(State state, String resolved, Throwable rejected) {
+				always.incrementAndGet();
+			}
+		});
+		
+		deferred.resolve(generation, "first");
+		Assert.assertEquals("first", result.get());
+		Assert.assertEquals(1, always.get());
+		
+		RecyclableDeferredObject<String, Void> reused = RecyclableDeferredObject.obtain();
+		Assert.assertSame(deferred, reused);
+		Assert.assertEquals(generation + 1, reused.getGeneration());
+		Assert.assertTrue(reused.isPending());
+		
+		// callbacks of the previous generation are gone
+		reused.resolve("second");
+		Assert.assertEquals("first", result.get());
+		Assert.assertEquals(1, always.get());
+	}
+	
+	@Test
+	public void testReturnsToTheObtainingThread() throws InterruptedException {
+		final AtomicReference<RecyclableDeferredObject<String, Void>> obtained = new AtomicReference<RecyclableDeferredObject<String, Void>>();
+		final AtomicReference<RecyclableDeferredObject<String, Void>> onWorker = new AtomicReference<RecyclableDeferredObject<String, Void>>();
+		final AtomicReference<RecyclableDeferredObject<String, Void>> reused = new AtomicReference<RecyclableDeferredObject<String, Void>>();
+		
+		// fresh threads, so that no pool holds instances of other tests
+		Thread io = new Thread() {
+			@Override
+			public void run() {
+				final RecyclableDeferredObject<String, Void> deferred = RecyclableDeferredObject.obtain();
+				final int generation = deferred.getGeneration();
+				obtained.set(deferred);
+				Thread worker = new Thread() {
+					@Override
+					public void run() {
+						deferred.resolve(generation, "done");
+						onWorker.set(RecyclableDeferredObject.<String, Void>obtain());
+					}
+				};
+				worker.start();
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					return;
+				}
+				reused.set(RecyclableDeferredObject.<String, Void>obtain());
+			}
+		};
+		io.start();
+		io.join();
+		
+		Assert.assertNotSame(obtained.get(), onWorker.get());
+		Assert.assertSame(obtained.get(), reused.get());
+	}
+	
+	@Test
+	public void testUseAfterRecycleFails() {
+		RecyclableDeferredObject<String, Void> deferred = RecyclableDeferredObject.obtain();
+		int generation = deferred.getGeneration();
+		deferred.reject(new IllegalArgumentException());
+		
+		try {
+			deferred.done(new DoneCallback<String>() {
+				@Override
+				public void onDone(String result) {
+				}
+			});
+			Assert.fail("callback registered on a recycled deferred");
+		} catch (IllegalStateException e) {
+		}
+		
+		RecyclableDeferredObject<String, Void> reused = RecyclableDeferredObject.obtain();
+		Assert.assertSame(deferred, reused);
+		try {
+			reused.resolve(generation, "stale");
+			Assert.fail("resolved by a stale holder");
+		} catch (IllegalStateException e) {
+		}
+		Assert.assertTrue(reused.isPending());
+		reused.resolve(reused.getGeneration(), "fresh");
+	}
+	
+	@Test
+	public void testWaitSafelyReturnsOnceItsGenerationFinished() throws InterruptedException {
+		final RecyclableDeferredObject<String, Void> deferred = new RecyclableDeferredObject<String, Void>();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+				deferred.resolve("done");
+			}
+		};
+		thread.start();
+		
+		deferred.waitSafely(5000);
+		Assert.assertEquals(1, deferred.getGeneration());
+		thread.join();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.RetryPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryTest extends AbstractDeferredTest {
+	private final AtomicInteger attempts = new AtomicInteger();
+	
+	private Callable<Integer> failingCallable(final int failures) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				int attempt = attempts.incrementAndGet();
+				if (attempt <= failures)
+					throw new IllegalStateException("attempt " + attempt);
+				return attempt;
+			}
+		};
+	}
+	
+	@Test
+	public void testRetriesUntilSuccess() throws InterruptedException {
+		Promise<Integer, Void> promise = deferredManager.retry(failingCallable(2),
+				RetryPolicies.exponentialBackoff(5, 10, 100, TimeUnit.MILLISECONDS));
+		promise.waitSafely();
+		
+		Assert.assertTrue(promise.isResolved());
+		Assert.assertEquals(3, attempts.get());
+	}
+	
+	@Test
+	public void testGivesUpWithLastFailure() throws InterruptedException {
+		final ValueHolder<Throwable> failure = new ValueHolder<Throwable>();
+		Promise<Integer, Void> promise = deferredManager.retry(failingCallable(10),
+				RetryPolicies.fixedDelay(2, 10, TimeUnit.MILLISECONDS));
+		promise.fail(new FailCallback() {
+			@Override
+			public void onFail(Throwable result) {
+				failure.set(result);
+			}
+		});
+		promise.waitSafely();
+		
+		Assert.assertTrue(promise.isRejected());
+		Assert.assertEquals(3, attempts.get());
+		Assert.assertEquals("attempt 3", failure.get().getMessage());
+	}
+	
+	@Test
+	public void testRetryBudget() throws InterruptedException {
+		RetryBudget budget = new RetryBudget(0, 1);
+		deferredManager.setRetryBudget(budget);
+		
+		Promise<Integer, Void> promise = deferredManager.retry(failingCallable(10),
+				RetryPolicies.fixedDelay(5, 10, TimeUnit.MILLISECONDS));
+		promise.waitSafely();
+		
+		Assert.assertTrue(promise.isRejected());
+		Assert.assertEquals(2, attempts.get());
+		Assert.assertEquals(0, budget.getAvailableRetries());
+	}
+	
+	@Test
+	public void testExponentialBackoffBounds() {
+		RetryPolicy policy = RetryPolicies.exponentialBackoff(10, 100, 1000, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(policy.retryDelay(1, null) <= 100);
+			Assert.assertTrue(policy.retryDelay(3, null) <= 400);
+			Assert.assertTrue(policy.retryDelay(9, null) <= 1000);
+			Assert.assertTrue(policy.retryDelay(9, null) >= 0);
+		}
+		Assert.assertTrue(policy.retryDelay(11, null) < 0);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerialExecutorTest extends AbstractDeferredTest {
+	@Test
+	public void testRunsInOrderWithOneHandOffPerBurst() throws InterruptedException {
+		final AtomicInteger handOffs = new AtomicInteger();
+		final ExecutorService pool = deferredManager.getExecutorService();
+		SerialExecutor serial = new SerialExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				handOffs.incrementAndGet();
+				pool.execute(command);
+			}
+		});
+		
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(100);
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		serial.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		for (int i = 0; i < 100; i++) {
+			final int n = i;
+			serial.execute(new Runnable() {
+				@Override
+				public void run() {
+					order.add(n);
+					done.countDown();
+				}
+			});
+		}
+		gate.countDown();
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(1, handOffs.get());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(Integer.valueOf(i), order.get(i));
+		}
+	}
+	
+	@Test
+	public void testNeverRunsConcurrently() throws InterruptedException {
+		final SerialExecutor serial = deferredManager.newSerialExecutor();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(4 * 1000);
+		
+		ExecutorService producers = Executors.newFixedThreadPool(4);
+		for (int p = 0; p < 4; p++) {
+			producers.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						serial.execute(new Runnable() {
+							@Override
+							public void run() {
+								if (running.incrementAndGet() > 1)
+									overlaps.incrementAndGet();
+								running.decrementAndGet();
+								done.countDown();
+							}
+						});
+					}
+				}
+			});
+		}
+		
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		producers.shutdown();
+		Assert.assertEquals(0, overlaps.get());
+	}
+	
+	@Test
+	public void testFailingTaskDoesNotStopDrain() throws InterruptedException {
+		SerialExecutor serial = deferredManager.newSerialExecutor();
+		final CountDownLatch done = new CountDownLatch(1);
+		serial.execute(new Runnable() {
+			@Override
+			public void run() {
+				throw new RuntimeException("this exception is expected");
+			}
+		});
+		serial.execute(new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		});
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest extends AbstractDeferredTest {
+	@Test
+	public void testSameKeySharesPromise() throws InterruptedException {
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		Callable<Integer> callable = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				latch.await();
+				return calls.incrementAndGet();
+			}
+		};
+		
+		Promise<Integer, Void> first = deferredManager.whenKeyed("user-1", callable);
+		Promise<Integer, Void> second = deferredManager.whenKeyed("user-1", callable);
+		Promise<Integer, Void> other = deferredManager.whenKeyed("user-2", callable);
+		Assert.assertSame(first, second);
+		Assert.assertNotSame(first, other);
+		
+		latch.countDown();
+		first.waitSafely();
+		other.waitSafely();
+		Assert.assertEquals(2, calls.get());
+	}
+	
+	@Test
+	public void testEntryClearedOnCompletion() throws InterruptedException {
+		Promise<Integer, Void> first = deferredManager.whenKeyed("key", successCallable(1, 0));
+		first.waitSafely();
+		
+		Promise<Integer, Void> second = deferredManager.whenKeyed("key", successCallable(2, 0));
+		Assert.assertNotSame(first, second);
+		second.waitSafely();
+		Assert.assertTrue(second.isResolved());
+	}
+	
+	@Test
+	public void testEntryClearedOnFailure() throws InterruptedException {
+		Promise<Void, Void> first = deferredManager.whenKeyed("key", failedCallable(new RuntimeException("oops"), 0));
+		first.waitSafely();
+		Assert.assertTrue(first.isRejected());
+		
+		Promise<Void, Void> second = deferredManager.whenKeyed("key", failedCallable(new RuntimeException("oops"), 0));
+		Assert.assertNotSame(first, second);
+		second.waitSafely();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.UncaughtCallbackExceptionHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UncaughtCallbackExceptionHandlerTest extends AbstractDeferredTest {
+	private static final DoneCallback<Integer> FAILING_CALLBACK = new DoneCallback<Integer>() {
+		@Override
+		public void onDone(Integer result) {
+			throw new RuntimeException("this exception is expected");
+		}
+	};
+	
+	@Test
+	public void testManagerHandler() {
+		final AtomicInteger count = new AtomicInteger();
+		deferredManager.setUncaughtCallbackExceptionHandler(new UncaughtCallbackExceptionHandler() {
+			@Override
+			public void uncaughtException(Promise<?, ?> promise, Object callback, Throwable exception) {
+				Assert.assertSame(FAILING_CALLBACK, callback);
+				count.incrementAndGet();
+			}
+		});
+		
+		// the tasks only finish once the callbacks are registered
+		final CountDownLatch registered = new CountDownLatch(1);
+		Callable<Integer> task = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				registered.await();
+				return 1;
+			}
+		};
+		deferredManager.when(task).done(FAILING_CALLBACK);
+		deferredManager.when(task).then(new FilteredPromise.NoOpDoneFilter<Integer>())
+				.done(FAILING_CALLBACK);
+		registered.countDown();
+		
+		waitForCompletion();
+		Assert.assertEquals(2, count.get());
+	}
+	
+	@Test
+	public void testRateLimitedHandlerSuppressesRepeats() {
+		RateLimitedUncaughtCallbackExceptionHandler handler =
+				new RateLimitedUncaughtCallbackExceptionHandler(5, 1, TimeUnit.HOURS);
+		
+		for (int i = 0; i < 100; i++) {
+			DeferredObject<Integer, Void> deferred = new DeferredObject<Integer, Void>();
+			deferred.setUncaughtCallbackExceptionHandler(handler);
+			deferred.done(FAILING_CALLBACK);
+			deferred.resolve(i);
+		}
+		
+		Assert.assertEquals(100, handler.getExceptionCount());
+		Assert.assertEquals(99, handler.getSuppressedCount());
+	}
+}
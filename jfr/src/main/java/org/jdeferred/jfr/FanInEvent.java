@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Committed when a {@link org.jdeferred.multiple.MasterDeferredObject} leaves the pending state.
+ * 
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.FanIn")
+@Label("Promise Fan-In")
+@Description("A MasterDeferredObject combining several promises was resolved, rejected or cancelled")
+@Category({ "JDeferred", "Promise" })
+@StackTrace(false)
+class FanInEvent extends Event {
+	@Label("State")
+	String state;
+
+	@Label("Promises")
+	int promises;
+
+	@Label("Done")
+	int done;
+
+	@Label("Failed")
+	int failed;
+
+	@Label("Pending Duration")
+	@Description("Time from creation until the state transition, if known")
+	@Timespan(Timespan.NANOSECONDS)
+	long pendingDuration;
+}
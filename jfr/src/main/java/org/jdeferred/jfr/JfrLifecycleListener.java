@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.EventType;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.LifecycleListener;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+import org.jdeferred.impl.AbstractPromise;
+import org.jdeferred.impl.LifecycleListenerAdapter;
+import org.jdeferred.multiple.MasterDeferredObject;
+
+/**
+ * A {@link LifecycleListener} that turns promise and task lifecycle events into
+ * JDK Flight Recorder events:
+ * <ul>
+ * <li><code>org.jdeferred.Promise</code> when a promise is resolved, rejected or cancelled</li>
+ * <li><code>org.jdeferred.FanIn</code> when a {@link MasterDeferredObject} is resolved, rejected or cancelled</li>
+ * <li><code>org.jdeferred.Task</code> when a {@link DeferredFutureTask} finished running</li>
+ * </ul>
+ * 
+ * Each event carries the thread it happened on, and durations in nanoseconds.  Stack
+ * traces are off by default and can be turned on per event in the recording settings.
+ * When the events are not enabled in any recording, the listener does no work.
+ * 
+ * <pre>
+ * <code>
+ * AbstractPromise.setDefaultLifecycleListener(new JfrLifecycleListener());
+ * </code>
+ * </pre>
+ * 
+ * @author Ray Tsang
+ */
+public class JfrLifecycleListener extends LifecycleListenerAdapter {
+	private static final EventType PROMISE_EVENT = EventType.getEventType(PromiseEvent.class);
+	private static final EventType FAN_IN_EVENT = EventType.getEventType(FanInEvent.class);
+	private static final EventType TASK_EVENT = EventType.getEventType(TaskEvent.class);
+
+	@Override
+	public void onPromiseResolved(Promise<?, ?> promise, Object resolved) {
+		commitState(promise, State.RESOLVED);
+	}
+
+	@Override
+	public void onPromiseRejected(Promise<?, ?> promise, Throwable rejected) {
+		commitState(promise, State.REJECTED);
+	}
+
+	@Override
+	public void onPromiseCancelled(Promise<?, ?> promise) {
+		commitState(promise, State.CANCELLED);
+	}
+
+	@Override
+	public void onTaskFinished(DeferredFutureTask<?, ?> task) {
+		if (!TASK_EVENT.isEnabled())
+			return;
+
+		TaskEvent event = new TaskEvent();
+		event.taskClass = task.getClass().getName();
+		event.cancelled = task.isCancelled();
+		if (task.getQueuedTime() != 0)
+			event.queueDuration = task.getStartedTime() - task.getQueuedTime();
+		event.runDuration = task.getFinishedTime() - task.getStartedTime();
+		event.commit();
+	}
+
+	private void commitState(Promise<?, ?> promise, State state) {
+		if (promise instanceof MasterDeferredObject) {
+			if (!FAN_IN_EVENT.isEnabled())
+				return;
+
+			MasterDeferredObject master = (MasterDeferredObject) promise;
+			FanInEvent event = new FanInEvent();
+			event.state = state.name();
+			event.promises = master.getNumberOfPromises();
+			event.done = master.getDoneCount();
+			event.failed = master.getFailCount();
+			event.pendingDuration = pendingDuration(promise);
+			event.commit();
+		} else {
+			if (!PROMISE_EVENT.isEnabled())
+				return;
+
+			PromiseEvent event = new PromiseEvent();
+			event.promiseClass = promise.getClass().getName();
+			event.state = state.name();
+			event.pendingDuration = pendingDuration(promise);
+			event.commit();
+		}
+	}
+
+	private static long pendingDuration(Promise<?, ?> promise) {
+		if (promise instanceof AbstractPromise) {
+			long createdTime = ((AbstractPromise<?, ?>) promise).getCreatedTime();
+			if (createdTime != 0)
+				return System.nanoTime() - createdTime;
+		}
+		return 0;
+	}
+}
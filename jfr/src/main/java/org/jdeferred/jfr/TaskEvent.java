@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Committed on the executing thread when a {@link org.jdeferred.DeferredFutureTask} finished running.
+ * 
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.Task")
+@Label("Deferred Task")
+@Description("A DeferredFutureTask finished running")
+@Category({ "JDeferred", "Task" })
+@StackTrace(false)
+class TaskEvent extends Event {
+	@Label("Task Class")
+	String taskClass;
+
+	@Label("Cancelled")
+	boolean cancelled;
+
+	@Label("Queue Duration")
+	@Description("Time from submission until the task started running, if it was submitted by a manager")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueDuration;
+
+	@Label("Run Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long runDuration;
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.jdeferred.impl.DefaultDeferredManager;
+import org.jdeferred.impl.DeferredObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JfrLifecycleListenerTest {
+	private DefaultDeferredManager deferredManager;
+
+	@Before
+	public void setUp() {
+		deferredManager = new DefaultDeferredManager();
+		deferredManager.setLifecycleListener(new JfrLifecycleListener());
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		deferredManager.shutdown();
+		deferredManager.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testEvents() throws Exception {
+		File file = File.createTempFile("jdeferred", ".jfr");
+		file.deleteOnExit();
+
+		Recording recording = new Recording();
+		recording.enable(PromiseEvent.class);
+		recording.enable(FanInEvent.class);
+		recording.enable(TaskEvent.class);
+		recording.start();
+
+		DeferredObject<Integer, Void> deferred = new DeferredObject<Integer, Void>();
+		deferredManager.when(deferred, deferredManager.when(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				Thread.sleep(20);
+				return 1;
+			}
+		}));
+		deferred.resolve(2);
+		tearDown();
+
+		recording.stop();
+		recording.dump(file.toPath());
+		recording.close();
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+		int promises = 0, fanIns = 0, tasks = 0;
+		for (RecordedEvent event : events) {
+			String name = event.getEventType().getName();
+			if ("org.jdeferred.Promise".equals(name)) {
+				promises++;
+			} else if ("org.jdeferred.FanIn".equals(name)) {
+				fanIns++;
+				Assert.assertEquals(2, event.getInt("promises"));
+				Assert.assertEquals("RESOLVED", event.getString("state"));
+			} else if ("org.jdeferred.Task".equals(name)) {
+				tasks++;
+				Assert.assertTrue(event.getDuration("runDuration").toMillis() >= 20);
+			}
+		}
+		Assert.assertEquals(1, promises);
+		Assert.assertEquals(1, fanIns);
+		Assert.assertEquals(1, tasks);
+	}
+}